@@ -0,0 +1,33 @@
+package com.in28minutes.spring.basics.springin5steps.benchmarks;
+
+import java.io.File;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Runs the benchmarks with the GC profiler (allocation rate per operation)
+// and writes JSON results to results/<label>.json, where the label is the
+// benchmark.label system property (for example a commit id). Any regular
+// JMH command line options, such as a benchmark regex or -p size=4096, are
+// passed through.
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException,
+			CommandLineOptionException {
+		String label = System.getProperty("benchmark.label", "local");
+		new File("results").mkdirs();
+
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result("results/" + label + ".json").build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,100 @@
+package com.in28minutes.spring.basics.springin5steps.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.in28minutes.spring.basics.springin5steps.BinarySearchImpl;
+import com.in28minutes.spring.basics.springin5steps.EytzingerSearchIndex;
+
+// Lookups through the BinarySearchImpl bean on an array marked immutable, so
+// the sorted copy comes from the cache. Scores are per key.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class BinarySearchBenchmark {
+
+	private static final int KEYS = 4096;
+
+	@Param({ "16", "4096", "1048576", "10000000" })
+	int size;
+
+	@Param({ "RANDOM", "FEW_UNIQUE" })
+	Distribution distribution;
+
+	private ConfigurableApplicationContext context;
+	private BinarySearchImpl binarySearch;
+	private EytzingerSearchIndex index;
+	private int[] numbers;
+	private int[] keys;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		context = SpringBeans.start();
+		binarySearch = context.getBean(BinarySearchImpl.class);
+		numbers = distribution.generate(size);
+		binarySearch.markImmutable(numbers);
+		index = binarySearch.buildIndex(numbers);
+
+		Random random = new Random(7);
+		keys = new int[KEYS];
+		for (int i = 0; i < KEYS; i++) {
+			keys[i] = numbers[random.nextInt(size)] + random.nextInt(2);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(KEYS)
+	public int binarySearch() {
+		int sum = 0;
+		for (int key : keys) {
+			sum += binarySearch.binarySearch(numbers, key);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(KEYS)
+	public int[] binarySearchAll() {
+		return binarySearch.binarySearchAll(numbers, keys);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(KEYS)
+	public int[] binarySearchAllParallel() {
+		return binarySearch.binarySearchAll(numbers, keys, true);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(KEYS)
+	public int eytzingerIndex() {
+		int sum = 0;
+		for (int key : keys) {
+			sum += index.search(key);
+		}
+		return sum;
+	}
+}
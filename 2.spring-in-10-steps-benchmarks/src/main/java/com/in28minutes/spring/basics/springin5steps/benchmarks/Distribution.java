@@ -0,0 +1,50 @@
+package com.in28minutes.spring.basics.springin5steps.benchmarks;
+
+import java.util.Random;
+
+// Input shapes the sort benchmarks run against. Generation is seeded so every
+// run and every algorithm sees the same data.
+public enum Distribution {
+
+	RANDOM {
+		@Override
+		int value(Random random, int index, int size) {
+			return random.nextInt();
+		}
+	},
+	SORTED {
+		@Override
+		int value(Random random, int index, int size) {
+			return index;
+		}
+	},
+	REVERSED {
+		@Override
+		int value(Random random, int index, int size) {
+			return size - index;
+		}
+	},
+	FEW_UNIQUE {
+		@Override
+		int value(Random random, int index, int size) {
+			return random.nextInt(16);
+		}
+	},
+	SAWTOOTH {
+		@Override
+		int value(Random random, int index, int size) {
+			return index % 1024;
+		}
+	};
+
+	abstract int value(Random random, int index, int size);
+
+	public int[] generate(int size) {
+		Random random = new Random(42);
+		int[] numbers = new int[size];
+		for (int i = 0; i < size; i++) {
+			numbers[i] = value(random, i, size);
+		}
+		return numbers;
+	}
+}
@@ -0,0 +1,67 @@
+package com.in28minutes.spring.basics.springin5steps.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.in28minutes.spring.basics.springin5steps.QuickSortAlgorithm;
+import com.in28minutes.spring.basics.springin5steps.QuickSortAlgorithm.Partitioning;
+
+// QuickSortAlgorithm partitioning modes on input with few distinct values.
+// Runs single threaded so the partitioning itself is what gets measured.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class QuickSortPartitioningBenchmark {
+
+	@Param({ "TWO_WAY", "THREE_WAY", "AUTO" })
+	Partitioning partitioning;
+
+	@Param({ "1", "2", "16", "256" })
+	int distinct;
+
+	@Param({ "1000000" })
+	int size;
+
+	private QuickSortAlgorithm quickSort;
+	private int[] source;
+	private int[] numbers;
+
+	@Setup(Level.Trial)
+	public void generate() {
+		quickSort = new QuickSortAlgorithm(ForkJoinPool.commonPool(), 32,
+				Integer.MAX_VALUE, partitioning);
+		Random random = new Random(42);
+		source = new int[size];
+		for (int i = 0; i < size; i++) {
+			source[i] = random.nextInt(distinct);
+		}
+		numbers = new int[size];
+	}
+
+	@Setup(Level.Invocation)
+	public void reset() {
+		System.arraycopy(source, 0, numbers, 0, size);
+	}
+
+	@Benchmark
+	public int[] sort() {
+		return quickSort.sort(numbers);
+	}
+}
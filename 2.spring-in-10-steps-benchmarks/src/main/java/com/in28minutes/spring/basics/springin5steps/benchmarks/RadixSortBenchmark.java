@@ -0,0 +1,66 @@
+package com.in28minutes.spring.basics.springin5steps.benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.in28minutes.spring.basics.springin5steps.RadixSortAlgorithm;
+
+// RadixSortAlgorithm against Arrays.sort on uniformly distributed ints.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class RadixSortBenchmark {
+
+	@Param({ "1000000", "4000000", "10000000" })
+	int size;
+
+	private final RadixSortAlgorithm radixSort = new RadixSortAlgorithm();
+
+	private int[] source;
+	private int[] numbers;
+
+	@Setup(Level.Trial)
+	public void generate() {
+		Random random = new Random(42);
+		source = new int[size];
+		for (int i = 0; i < size; i++) {
+			source[i] = random.nextInt();
+		}
+		numbers = new int[size];
+	}
+
+	// Sorting takes milliseconds, so a per-invocation copy does not skew
+	// the measurement
+	@Setup(Level.Invocation)
+	public void reset() {
+		System.arraycopy(source, 0, numbers, 0, size);
+	}
+
+	@Benchmark
+	public int[] radixSort() {
+		return radixSort.sort(numbers);
+	}
+
+	@Benchmark
+	public int[] arraysSort() {
+		Arrays.sort(numbers);
+		return numbers;
+	}
+}
@@ -0,0 +1,68 @@
+package com.in28minutes.spring.basics.springin5steps.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.in28minutes.spring.basics.springin5steps.SortAlgorithm;
+
+// Every SortAlgorithm bean across sizes and input distributions. Each
+// operation sorts the unsorted source into a work array with sortInto, so
+// the copy is part of every score and small sizes are dominated by it in the
+// same way for all algorithms. bubbleSortAlgorithm is quadratic and is left
+// out of the default run; pass -p algorithm=bubbleSortAlgorithm with small
+// sizes to include it.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class SortAlgorithmBenchmark {
+
+	@Param({ "quickSortAlgorithm", "mergeSortAlgorithm", "radixSortAlgorithm", "adaptiveSortAlgorithm" })
+	String algorithm;
+
+	@Param({ "16", "256", "4096", "65536", "1048576", "10000000" })
+	int size;
+
+	@Param({ "RANDOM", "SORTED", "REVERSED", "FEW_UNIQUE", "SAWTOOTH" })
+	Distribution distribution;
+
+	private ConfigurableApplicationContext context;
+	private SortAlgorithm sortAlgorithm;
+	private int[] source;
+	private int[] numbers;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		context = SpringBeans.start();
+		sortAlgorithm = context.getBean(algorithm, SortAlgorithm.class);
+		source = distribution.generate(size);
+		numbers = new int[size];
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public int[] sort() {
+		sortAlgorithm.sortInto(source, numbers);
+		return numbers;
+	}
+}
@@ -0,0 +1,24 @@
+package com.in28minutes.spring.basics.springin5steps.benchmarks;
+
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.in28minutes.spring.basics.springin5steps.SpringIn5StepsApplication;
+
+// Benchmarks pull the beans out of the real application context so they
+// measure the same wiring and configuration the application uses.
+final class SpringBeans {
+
+	private SpringBeans() {
+	}
+
+	static ConfigurableApplicationContext start() {
+		return new SpringApplicationBuilder(SpringIn5StepsApplication.class)
+				.web(WebApplicationType.NONE).logStartupInfo(false)
+				.bannerMode(Banner.Mode.OFF)
+				.run("--logging.level.root=WARN",
+						"--logging.level.org.springframework=WARN");
+	}
+}
@@ -0,0 +1,60 @@
+package com.in28minutes.spring.basics.springin5steps.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.in28minutes.spring.basics.springin5steps.BinarySearchImpl;
+import com.in28minutes.spring.basics.springin5steps.SpringIn5StepsFunctionalApplication;
+
+// Cold start of a batch job: create the context, run one search, close it.
+// Every fork measures a single start in a fresh JVM, so class loading and
+// the interpreter are part of the result, as they are for a real job.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmark {
+
+	public enum Bootstrap {
+		// @SpringBootApplication with component scanning and auto-configuration
+		SCANNED {
+			@Override
+			ConfigurableApplicationContext start() {
+				return SpringBeans.start();
+			}
+		},
+		// GenericApplicationContext filled by SortBeansInitializer
+		FUNCTIONAL {
+			@Override
+			ConfigurableApplicationContext start() {
+				return SpringIn5StepsFunctionalApplication.run();
+			}
+		};
+
+		abstract ConfigurableApplicationContext start();
+	}
+
+	@Param({ "SCANNED", "FUNCTIONAL" })
+	Bootstrap bootstrap;
+
+	@Benchmark
+	public int startSearchAndClose() {
+		try (ConfigurableApplicationContext context = bootstrap.start()) {
+			return context.getBean(BinarySearchImpl.class).binarySearch(
+					new int[] { 12, 4, 6 }, 3);
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package com.in28minutes.spring.basics.springin5steps.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.in28minutes.spring.basics.springin5steps.BinarySearchImpl;
+import com.in28minutes.spring.basics.springin5steps.IntKernels;
+import com.in28minutes.spring.basics.springin5steps.QuickSortAlgorithm;
+import com.in28minutes.spring.basics.springin5steps.QuickSortAlgorithm.Partitioning;
+import com.in28minutes.spring.basics.springin5steps.SortedArrayCache;
+
+// Scalar against vector IntKernels. The kernels are picked once per JVM, so
+// each variant runs in its own fork. Needs JDK 17+ and the benchmarked module
+// built on JDK 17+.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class VectorKernelBenchmark {
+
+	private static final String VECTOR_MODULE = "--add-modules=jdk.incubator.vector";
+
+	@Param({ "RANDOM", "SAWTOOTH" })
+	Distribution distribution;
+
+	@Param({ "1000000" })
+	int size;
+
+	// Keys looked up per search operation
+	@Param({ "1024" })
+	int keys;
+
+	private final QuickSortAlgorithm quickSort = new QuickSortAlgorithm(
+			ForkJoinPool.commonPool(), 32, Integer.MAX_VALUE,
+			Partitioning.TWO_WAY);
+
+	private BinarySearchImpl binarySearch;
+	private int[] source;
+	private int[] searchKeys;
+
+	@Setup(Level.Trial)
+	public void generate() {
+		// -Dkernels.vector=false marks the scalar forks
+		if (Boolean.parseBoolean(System.getProperty("kernels.vector", "true"))
+				&& "scalar".equals(IntKernels.get().getName())) {
+			throw new IllegalStateException(
+					"Vector kernels are not available on this JVM");
+		}
+		source = distribution.generate(size);
+		binarySearch = new BinarySearchImpl(quickSort, new SortedArrayCache(
+				SortedArrayCache.KeyMode.IDENTITY, 16, Long.MAX_VALUE));
+		binarySearch.markImmutable(source);
+		Random random = new Random(42);
+		searchKeys = new int[keys];
+		for (int i = 0; i < keys; i++) {
+			searchKeys[i] = source[random.nextInt(size)];
+		}
+	}
+
+	// Fresh unsorted copy for every sort, kept apart so the searches do not
+	// pay for the copy
+	@State(Scope.Thread)
+	public static class SortInput {
+
+		int[] numbers;
+
+		@Setup(Level.Invocation)
+		public void reset(VectorKernelBenchmark benchmark) {
+			if (numbers == null) {
+				numbers = new int[benchmark.size];
+			}
+			System.arraycopy(benchmark.source, 0, numbers, 0, numbers.length);
+		}
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = { VECTOR_MODULE, "-Dkernels.vector=false" })
+	public int[] scalarPartition(SortInput input) {
+		return quickSort.sort(input.numbers);
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = VECTOR_MODULE)
+	public int[] vectorPartition(SortInput input) {
+		return quickSort.sort(input.numbers);
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = { VECTOR_MODULE, "-Dkernels.vector=false" })
+	public int scalarSearch() {
+		return search();
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = VECTOR_MODULE)
+	public int vectorSearch() {
+		return search();
+	}
+
+	private int search() {
+		int found = 0;
+		for (int key : searchKeys) {
+			found += binarySearch.binarySearch(source, key);
+		}
+		return found;
+	}
+}
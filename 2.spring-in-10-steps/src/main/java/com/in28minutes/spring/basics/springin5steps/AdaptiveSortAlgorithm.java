@@ -0,0 +1,179 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Routes each call to the algorithm that suits the input: insertion sort for
+// tiny arrays, nothing (or a reversal) for presorted ones, radix sort for
+// large or narrow-range ones, the fork/join quick sort for huge ones and the
+// sequential quick sort for everything else.
+//
+// Every decision is counted per strategy. setOverride forces one strategy
+// for all calls, and choose shows what the router would pick for an input.
+@Component
+public class AdaptiveSortAlgorithm implements SortAlgorithm {
+
+	public enum Strategy {
+		INSERTION, PRESORTED, QUICK, RADIX, PARALLEL
+	}
+
+	static final int DEFAULT_INSERTION_SORT_THRESHOLD = 32;
+	static final int DEFAULT_RADIX_THRESHOLD = 65536;
+	static final int DEFAULT_NARROW_RANGE_RADIX_THRESHOLD = 2048;
+	static final int DEFAULT_PARALLEL_THRESHOLD = 4194304;
+
+	private static final int RANGE_SAMPLES = 64;
+
+	private final QuickSortAlgorithm quickSort;
+	private final RadixSortAlgorithm radixSort;
+	private final int insertionSortThreshold;
+	private final int radixThreshold;
+	private final int narrowRangeRadixThreshold;
+	private final int parallelThreshold;
+	private final boolean parallelAvailable;
+
+	private final AtomicLongArray decisions = new AtomicLongArray(
+			Strategy.values().length);
+	private volatile Strategy override;
+
+	public AdaptiveSortAlgorithm(QuickSortAlgorithm quickSort,
+			RadixSortAlgorithm radixSort,
+			@Value("${sort.adaptive.insertion-sort-threshold:" + DEFAULT_INSERTION_SORT_THRESHOLD + "}") int insertionSortThreshold,
+			@Value("${sort.adaptive.radix-threshold:" + DEFAULT_RADIX_THRESHOLD + "}") int radixThreshold,
+			@Value("${sort.adaptive.narrow-range-radix-threshold:" + DEFAULT_NARROW_RANGE_RADIX_THRESHOLD + "}") int narrowRangeRadixThreshold,
+			@Value("${sort.adaptive.parallel-threshold:" + DEFAULT_PARALLEL_THRESHOLD + "}") int parallelThreshold,
+			@Value("${sort.adaptive.override:#{null}}") Strategy override) {
+		this.quickSort = quickSort;
+		this.radixSort = radixSort;
+		this.insertionSortThreshold = insertionSortThreshold;
+		this.radixThreshold = radixThreshold;
+		this.narrowRangeRadixThreshold = narrowRangeRadixThreshold;
+		this.parallelThreshold = parallelThreshold;
+		this.parallelAvailable = quickSort.getPool().getParallelism() > 1;
+		this.override = override;
+	}
+
+	public void sortInPlace(int[] numbers, int from, int to) {
+		Strategy strategy = choose(numbers, from, to);
+		decisions.incrementAndGet(strategy.ordinal());
+		switch (strategy) {
+		case INSERTION:
+			Sorting.insertionSort(numbers, from, to);
+			break;
+		case PRESORTED:
+			if (isDescending(numbers, from, to)) {
+				reverse(numbers, from, to);
+			}
+			break;
+		case RADIX:
+			radixSort.sortInPlace(numbers, from, to);
+			break;
+		case QUICK:
+			quickSort.sortSequentially(numbers, from, to);
+			break;
+		default:
+			// PARALLEL lets the quick sort fork above its own threshold
+			quickSort.sortInPlace(numbers, from, to);
+		}
+	}
+
+	public Strategy choose(int[] numbers) {
+		return choose(numbers, 0, numbers.length);
+	}
+
+	public Strategy choose(int[] numbers, int from, int to) {
+		Strategy override = this.override;
+		if (override != null) {
+			return override;
+		}
+		int n = to - from;
+		if (n <= insertionSortThreshold) {
+			return Strategy.INSERTION;
+		}
+		// Both scans stop at the first element out of order, so random input
+		// costs only a few comparisons
+		if (isAscending(numbers, from, to) || isDescending(numbers, from, to)) {
+			return Strategy.PRESORTED;
+		}
+		if (n >= parallelThreshold && parallelAvailable) {
+			return Strategy.PARALLEL;
+		}
+		if (n >= radixThreshold
+				|| (n >= narrowRangeRadixThreshold && sampledRadixPasses(
+						numbers, from, to) <= 2)) {
+			return Strategy.RADIX;
+		}
+		return Strategy.QUICK;
+	}
+
+	private static boolean isAscending(int[] numbers, int from, int to) {
+		for (int i = from + 1; i < to; i++) {
+			if (numbers[i - 1] > numbers[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Strictly descending, so that reversing keeps equal elements in place
+	private static boolean isDescending(int[] numbers, int from, int to) {
+		for (int i = from + 1; i < to; i++) {
+			if (numbers[i - 1] <= numbers[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void reverse(int[] numbers, int from, int to) {
+		for (int i = from, j = to - 1; i < j; i++, j--) {
+			Sorting.swap(numbers, i, j);
+		}
+	}
+
+	// Number of byte passes radix sort would need for the value range of an
+	// evenly spaced sample
+	private static int sampledRadixPasses(int[] numbers, int from, int to) {
+		int step = Math.max(1, (to - from) / RANGE_SAMPLES);
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (int i = from; i < to; i += step) {
+			min = Math.min(min, numbers[i]);
+			max = Math.max(max, numbers[i]);
+		}
+		long range = (long) max - min;
+		int bits = 64 - Long.numberOfLeadingZeros(range);
+		return (bits + 7) / 8;
+	}
+
+	public Strategy getOverride() {
+		return override;
+	}
+
+	// null restores automatic routing
+	public void setOverride(Strategy override) {
+		this.override = override;
+	}
+
+	public long getDecisionCount(Strategy strategy) {
+		return decisions.get(strategy.ordinal());
+	}
+
+	public Map<Strategy, Long> getDecisionCounts() {
+		Map<Strategy, Long> counts = new EnumMap<>(Strategy.class);
+		for (Strategy strategy : Strategy.values()) {
+			counts.put(strategy, getDecisionCount(strategy));
+		}
+		return counts;
+	}
+
+	@Override
+	public String toString() {
+		return "AdaptiveSortAlgorithm [decisions=" + getDecisionCounts()
+				+ ", override=" + override + "]";
+	}
+}
@@ -0,0 +1,131 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Component;
+
+// Picks a strategy per search from a few probes of the range: exponential
+// search when the key sits in the first 1/256th, interpolation search when
+// evenly spaced samples lie close to the straight line between the first and
+// last value, binary search otherwise. Its own probe count is the cost of
+// choosing; the chosen strategy counts the search itself. The uniformity of
+// a whole SortedArray is sampled once and kept with the array.
+@Component
+public class AutoSearchStrategy implements SearchStrategy {
+
+	// Ranges below this are binary searched without sampling
+	static final int MIN_SAMPLED_RANGE = 1024;
+
+	private static final int SAMPLES = 8;
+	// A sample may sit this fraction of the range away from its
+	// interpolated position
+	private static final int UNIFORMITY_TOLERANCE_SHIFT = 4;
+
+	private final BinarySearchStrategy binarySearch;
+	private final ExponentialSearchStrategy exponentialSearch;
+	private final InterpolationSearchStrategy interpolationSearch;
+
+	private final ProbeCounts probeCounts = new ProbeCounts();
+	private final LongAdder binaryChoices = new LongAdder();
+	private final LongAdder exponentialChoices = new LongAdder();
+	private final LongAdder interpolationChoices = new LongAdder();
+
+	public AutoSearchStrategy(BinarySearchStrategy binarySearch,
+			ExponentialSearchStrategy exponentialSearch,
+			InterpolationSearchStrategy interpolationSearch) {
+		this.binarySearch = binarySearch;
+		this.exponentialSearch = exponentialSearch;
+		this.interpolationSearch = interpolationSearch;
+	}
+
+	public int lowerBound(int[] sortedNumbers, int from, int to, int key) {
+		return choose(sortedNumbers, from, to, key).lowerBound(sortedNumbers,
+				from, to, key);
+	}
+
+	@Override
+	public int lowerBound(SortedArray sorted, int key) {
+		int[] sortedNumbers = sorted.getNumbers();
+		return choose(sortedNumbers, 0, sortedNumbers.length, key, sorted)
+				.lowerBound(sortedNumbers, 0, sortedNumbers.length, key);
+	}
+
+	public SearchStrategy choose(int[] sortedNumbers, int from, int to, int key) {
+		return choose(sortedNumbers, from, to, key, null);
+	}
+
+	public SearchStrategy choose(SortedArray sorted, int key) {
+		return choose(sorted.getNumbers(), 0, sorted.getNumbers().length, key,
+				sorted);
+	}
+
+	// sorted, when given, is the whole of [from, to)
+	private SearchStrategy choose(int[] sortedNumbers, int from, int to,
+			int key, SortedArray sorted) {
+		int n = to - from;
+		if (n < MIN_SAMPLED_RANGE) {
+			probeCounts.record(0);
+			binaryChoices.increment();
+			return binarySearch;
+		}
+		if (key <= sortedNumbers[from + (n >>> 8)]) {
+			probeCounts.record(1);
+			exponentialChoices.increment();
+			return exponentialSearch;
+		}
+		boolean sampled = sorted != null && sorted.isSampled();
+		boolean uniform = sorted != null ? sorted.isNearlyUniform()
+				: isNearlyUniform(sortedNumbers, from, to);
+		probeCounts.record(sampled ? 1 : 1 + SAMPLES);
+		if (uniform) {
+			interpolationChoices.increment();
+			return interpolationSearch;
+		}
+		binaryChoices.increment();
+		return binarySearch;
+	}
+
+	static boolean isNearlyUniform(int[] sortedNumbers, int from, int to) {
+		int last = to - 1;
+		long low = sortedNumbers[from];
+		long high = sortedNumbers[last];
+		if (low == high) {
+			return false;
+		}
+		double positionsPerValue = (double) (last - from) / (high - low);
+		long tolerance = (long) (to - from) >> UNIFORMITY_TOLERANCE_SHIFT;
+		for (int i = 1; i < SAMPLES - 1; i++) {
+			int position = from + (int) ((long) (last - from) * i / (SAMPLES - 1));
+			double expected = from + (sortedNumbers[position] - low)
+					* positionsPerValue;
+			if (Math.abs(expected - position) > tolerance) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public long getSearches() {
+		return probeCounts.getSearches();
+	}
+
+	public long getProbes() {
+		return probeCounts.getProbes();
+	}
+
+	public Map<String, Long> getChoices() {
+		Map<String, Long> choices = new LinkedHashMap<>();
+		choices.put("binary", binaryChoices.sum());
+		choices.put("exponential", exponentialChoices.sum());
+		choices.put("interpolation", interpolationChoices.sum());
+		return choices;
+	}
+
+	@Override
+	public String toString() {
+		return "AutoSearchStrategy [" + probeCounts + ", choices="
+				+ getChoices() + "]";
+	}
+}
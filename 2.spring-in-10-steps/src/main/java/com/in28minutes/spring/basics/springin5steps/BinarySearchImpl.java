@@ -1,20 +1,183 @@
 package com.in28minutes.spring.basics.springin5steps;
 
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 @Component
 public class BinarySearchImpl {
 
+	// Minimum number of keys handed to each core by the parallel batch search
+	static final int PARALLEL_KEYS_PER_TASK = 4096;
+
+	private final SortAlgorithm sortAlgorithm;
+	private final SortedArrayCache sortedArrayCache;
+	private final SearchStrategy searchStrategy;
+
 	@Autowired
-	private SortAlgorithm sortAlgorithm;
-	
+	public BinarySearchImpl(
+			@Qualifier("adaptiveSortAlgorithm") SortAlgorithm sortAlgorithm,
+			SortedArrayCache sortedArrayCache,
+			@Qualifier("autoSearchStrategy") SearchStrategy searchStrategy) {
+		this.sortAlgorithm = sortAlgorithm;
+		this.sortedArrayCache = sortedArrayCache;
+		this.searchStrategy = searchStrategy;
+	}
+
+	public BinarySearchImpl(SortAlgorithm sortAlgorithm,
+			SortedArrayCache sortedArrayCache) {
+		this(sortAlgorithm, sortedArrayCache, new BinarySearchStrategy());
+	}
+
+	// Returns the index of the first occurrence of numberToSearchFor in the
+	// sorted form of numbers, or (-(insertion point) - 1) when it is absent.
+	// numbers itself is never modified.
 	public int binarySearch(int[] numbers, int numberToSearchFor) {
+		return binarySearch(numbers, numberToSearchFor, searchStrategy);
+	}
+
+	// Same result with the given strategy instead of the configured one
+	public int binarySearch(int[] numbers, int numberToSearchFor,
+			SearchStrategy strategy) {
 
-		int[] sortedNumbers = sortAlgorithm.sort(numbers);
-		System.out.println(sortAlgorithm);
+		SortedArray sorted = sortedArrayCache.sortedArray(numbers,
+				sortAlgorithm::sort);
 		// Search the array
-		return 3;
+		int index = strategy.lowerBound(sorted, numberToSearchFor);
+		return result(sorted.getNumbers(), index, numberToSearchFor);
+	}
+
+	// Answers every key with the same result binarySearch would return, but
+	// sorts numbers once and merges it with the sorted keys
+	public int[] binarySearchAll(int[] numbers, int[] keys) {
+		return binarySearchAll(numbers, keys, false);
+	}
+
+	// In parallel mode the sorted keys are split into contiguous chunks that
+	// are merged independently on the common ForkJoinPool
+	public int[] binarySearchAll(int[] numbers, int[] keys, boolean parallel) {
+		int[] sortedNumbers = sorted(numbers);
+		int[] results = new int[keys.length];
+
+		// Pack (key, position) into a long so the keys sort without boxing
+		// and each answer can be written back to its original position
+		long[] orderedKeys = new long[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			orderedKeys[i] = ((long) keys[i] << 32) | i;
+		}
+
+		int tasks = parallel ? Math.min(Runtime.getRuntime()
+				.availableProcessors(), keys.length / PARALLEL_KEYS_PER_TASK)
+				: 1;
+		if (tasks > 1) {
+			Arrays.parallelSort(orderedKeys);
+			IntStream.range(0, tasks).parallel().forEach(task -> gallopingMerge(
+					sortedNumbers, orderedKeys,
+					(int) ((long) keys.length * task / tasks),
+					(int) ((long) keys.length * (task + 1) / tasks), results));
+		} else {
+			Arrays.sort(orderedKeys);
+			gallopingMerge(sortedNumbers, orderedKeys, 0, keys.length, results);
+		}
+		return results;
+	}
+
+	// Builds a reusable, thread safe index over the sorted form of numbers
+	public EytzingerSearchIndex buildIndex(int[] numbers) {
+		return EytzingerSearchIndex.of(sorted(numbers));
+	}
+
+	// Searches a sorted file, such as the output of ExternalMergeSort, in
+	// place. Same result convention as binarySearch, with long indices.
+	public long binarySearch(MappedIntFile sortedNumbers, int numberToSearchFor) {
+		long from = 0;
+		long to = sortedNumbers.size();
+		while (from < to) {
+			long mid = (from + to) >>> 1;
+			if (sortedNumbers.get(mid) < numberToSearchFor) {
+				from = mid + 1;
+			} else {
+				to = mid;
+			}
+		}
+		if (from < sortedNumbers.size()
+				&& sortedNumbers.get(from) == numberToSearchFor) {
+			return from;
+		}
+		return -(from + 1);
+	}
+
+	// Lets later searches reuse the sorted form of numbers by identity; the
+	// caller must not modify numbers afterwards
+	public void markImmutable(int[] numbers) {
+		sortedArrayCache.markImmutable(numbers);
+	}
+
+	public SearchStrategy getSearchStrategy() {
+		return searchStrategy;
+	}
+
+	public SortedArrayCache getSortedArrayCache() {
+		return sortedArrayCache;
+	}
+
+	int[] sorted(int[] numbers) {
+		return sortedArrayCache.sorted(numbers, sortAlgorithm::sort);
+	}
+
+	static int search(int[] sortedNumbers, int numberToSearchFor) {
+		return result(sortedNumbers, BinarySearchStrategy.lowerBoundOf(
+				sortedNumbers, 0, sortedNumbers.length, numberToSearchFor),
+				numberToSearchFor);
+	}
+
+	private static int result(int[] sortedNumbers, int index,
+			int numberToSearchFor) {
+		if (index < sortedNumbers.length
+				&& sortedNumbers[index] == numberToSearchFor) {
+			return index;
+		}
+		return -(index + 1);
+	}
+
+	private static void gallopingMerge(int[] sortedNumbers,
+			long[] orderedKeys, int from, int to, int[] results) {
+		int position = 0;
+		for (int i = from; i < to; i++) {
+			int key = (int) (orderedKeys[i] >> 32);
+			int index = (int) orderedKeys[i];
+			if (i > from && key == (int) (orderedKeys[i - 1] >> 32)) {
+				results[index] = results[(int) orderedKeys[i - 1]];
+				continue;
+			}
+			position = gallop(sortedNumbers, position, key);
+			results[index] = position < sortedNumbers.length
+					&& sortedNumbers[position] == key ? position
+					: -(position + 1);
+		}
+	}
+
+	// Lower bound of numberToSearchFor in [from, length), probing from, from
+	// + 1, from + 3, from + 7, ... before finishing with a binary search.
+	// Costs O(log d) where d is the distance from the starting point.
+	static int gallop(int[] sortedNumbers, int from, int numberToSearchFor) {
+		int length = sortedNumbers.length;
+		if (from >= length || sortedNumbers[from] >= numberToSearchFor) {
+			return from;
+		}
+		int below = from;
+		int step = 1;
+		int probe = from + step;
+		while (probe < length && sortedNumbers[probe] < numberToSearchFor) {
+			below = probe;
+			step <<= 1;
+			probe = from + step;
+		}
+		return BinarySearchStrategy.lowerBoundOf(sortedNumbers, below + 1,
+				Math.min(probe, length), numberToSearchFor);
 	}
 
 }
@@ -0,0 +1,57 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import org.springframework.stereotype.Component;
+
+// Plain halving down to a few vectors, then a linear count on IntKernels.
+// Always about log2(n) probes, whatever the distribution.
+@Component
+public class BinarySearchStrategy implements SearchStrategy {
+
+	private static final IntKernels KERNELS = IntKernels.get();
+
+	private final ProbeCounts probeCounts = new ProbeCounts();
+
+	public int lowerBound(int[] sortedNumbers, int from, int to, int key) {
+		long result = lowerBoundAndProbes(sortedNumbers, from, to, key);
+		probeCounts.record((int) (result >>> 32));
+		return (int) result;
+	}
+
+	public long getSearches() {
+		return probeCounts.getSearches();
+	}
+
+	public long getProbes() {
+		return probeCounts.getProbes();
+	}
+
+	// Lower bound without counting, for callers outside the strategies
+	static int lowerBoundOf(int[] sortedNumbers, int from, int to, int key) {
+		return (int) lowerBoundAndProbes(sortedNumbers, from, to, key);
+	}
+
+	// Returns probes << 32 | index, so the other strategies can finish with
+	// a binary search and still count its probes
+	static long lowerBoundAndProbes(int[] sortedNumbers, int from, int to,
+			int key) {
+		int linearScanThreshold = KERNELS.linearScanThreshold();
+		long probes = 0;
+		while (to - from > linearScanThreshold) {
+			int mid = (from + to) >>> 1;
+			probes++;
+			if (sortedNumbers[mid] < key) {
+				from = mid + 1;
+			} else {
+				to = mid;
+			}
+		}
+		probes += to - from;
+		int index = from + KERNELS.countLessThan(sortedNumbers, from, to, key);
+		return probes << 32 | index;
+	}
+
+	@Override
+	public String toString() {
+		return "BinarySearchStrategy [" + probeCounts + "]";
+	}
+}
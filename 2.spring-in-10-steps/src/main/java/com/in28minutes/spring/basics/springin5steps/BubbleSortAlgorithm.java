@@ -6,8 +6,19 @@ import org.springframework.stereotype.Component;
 @Component
 @Primary
 public class BubbleSortAlgorithm implements SortAlgorithm {
-	public int[] sort(int[] numbers) {
-		// Logic for Bubble Sort
-		return numbers;
+	public void sortInPlace(int[] numbers, int from, int to) {
+		// Logic for Bubble Sort: everything after the last swap of a pass is
+		// already in place
+		int end = to;
+		while (end - from > 1) {
+			int lastSwap = from;
+			for (int i = from + 1; i < end; i++) {
+				if (numbers[i - 1] > numbers[i]) {
+					Sorting.swap(numbers, i - 1, i);
+					lastSwap = i;
+				}
+			}
+			end = lastSwap;
+		}
 	}
 }
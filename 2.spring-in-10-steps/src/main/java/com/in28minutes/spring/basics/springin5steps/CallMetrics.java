@@ -0,0 +1,71 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+// Recorders filled in by InstrumentationBeanPostProcessor, keyed by
+// "beanName.methodName". Readable in code through snapshot() and over JMX.
+@Component
+@ManagedResource(description = "Calls, input sizes and latencies of the sort and search beans")
+public class CallMetrics {
+
+	private final ConcurrentMap<String, CallRecorder> recorders = new ConcurrentHashMap<>();
+
+	public CallRecorder recorder(String name) {
+		return recorders.computeIfAbsent(name, key -> new CallRecorder());
+	}
+
+	public Map<String, CallRecorder.Snapshot> snapshot() {
+		Map<String, CallRecorder.Snapshot> snapshot = new TreeMap<>();
+		recorders.forEach((name, recorder) -> snapshot.put(name,
+				recorder.snapshot()));
+		return snapshot;
+	}
+
+	@ManagedAttribute
+	public String[] getRecorderNames() {
+		return snapshot().keySet().toArray(new String[0]);
+	}
+
+	@ManagedOperation
+	public long getCalls(String name) {
+		CallRecorder recorder = recorders.get(name);
+		return recorder == null ? 0 : recorder.snapshot().getCalls();
+	}
+
+	@ManagedOperation
+	public long getElements(String name) {
+		CallRecorder recorder = recorders.get(name);
+		return recorder == null ? 0 : recorder.snapshot().getElements();
+	}
+
+	@ManagedOperation
+	public long getPercentileNanos(String name, double percentile) {
+		CallRecorder recorder = recorders.get(name);
+		return recorder == null ? 0 : recorder.snapshot().getPercentileNanos(
+				percentile);
+	}
+
+	@ManagedOperation
+	public String describe(String name) {
+		CallRecorder recorder = recorders.get(name);
+		return recorder == null ? null : recorder.snapshot().toString();
+	}
+
+	@ManagedOperation
+	public void reset() {
+		recorders.values().forEach(CallRecorder::reset);
+	}
+
+	@Override
+	public String toString() {
+		return "CallMetrics " + snapshot();
+	}
+}
@@ -0,0 +1,126 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free call statistics for one method of one bean. Latencies go into
+// power-of-two nanosecond buckets: bucket b counts calls that took
+// [2^(b-1), 2^b) nanoseconds, bucket 0 the ones that took no measurable time.
+public final class CallRecorder {
+
+	static final int BUCKETS = 64;
+
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder elements = new LongAdder();
+	private final LongAdder nanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+	private final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+	CallRecorder() {
+		for (int i = 0; i < BUCKETS; i++) {
+			histogram[i] = new LongAdder();
+		}
+	}
+
+	public void record(long inputSize, long elapsedNanos) {
+		calls.increment();
+		elements.add(inputSize);
+		nanos.add(elapsedNanos);
+		maxNanos.accumulate(elapsedNanos);
+		histogram[bucket(elapsedNanos)].increment();
+	}
+
+	// The counters are read one by one, so a snapshot taken while calls are
+	// recorded may be off by the calls in flight
+	public Snapshot snapshot() {
+		long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = histogram[i].sum();
+		}
+		return new Snapshot(calls.sum(), elements.sum(), nanos.sum(),
+				maxNanos.get(), counts);
+	}
+
+	public void reset() {
+		calls.reset();
+		elements.reset();
+		nanos.reset();
+		maxNanos.reset();
+		for (LongAdder count : histogram) {
+			count.reset();
+		}
+	}
+
+	static int bucket(long elapsedNanos) {
+		return elapsedNanos <= 0 ? 0 : Math.min(BUCKETS - 1,
+				64 - Long.numberOfLeadingZeros(elapsedNanos));
+	}
+
+	public static final class Snapshot {
+
+		private final long calls;
+		private final long elements;
+		private final long nanos;
+		private final long maxNanos;
+		private final long[] histogram;
+
+		Snapshot(long calls, long elements, long nanos, long maxNanos,
+				long[] histogram) {
+			this.calls = calls;
+			this.elements = elements;
+			this.nanos = nanos;
+			this.maxNanos = maxNanos;
+			this.histogram = histogram;
+		}
+
+		public long getCalls() {
+			return calls;
+		}
+
+		// Sum of the input sizes of every call
+		public long getElements() {
+			return elements;
+		}
+
+		public long getTotalNanos() {
+			return nanos;
+		}
+
+		public long getMaxNanos() {
+			return maxNanos;
+		}
+
+		public double getMeanNanos() {
+			return calls == 0 ? 0 : (double) nanos / calls;
+		}
+
+		// Upper bound of the bucket holding the given percentile (0 to 100)
+		public long getPercentileNanos(double percentile) {
+			long total = 0;
+			for (long count : histogram) {
+				total += count;
+			}
+			long rank = (long) Math.ceil(total * percentile / 100);
+			long seen = 0;
+			for (int i = 0; i < histogram.length; i++) {
+				seen += histogram[i];
+				if (seen >= rank && seen > 0) {
+					return i == 0 ? 0 : Math.min(1L << i, maxNanos);
+				}
+			}
+			return 0;
+		}
+
+		public long[] getHistogram() {
+			return histogram.clone();
+		}
+
+		@Override
+		public String toString() {
+			return "Snapshot [calls=" + calls + ", elements=" + elements
+					+ ", meanNanos=" + (long) getMeanNanos() + ", p50Nanos="
+					+ getPercentileNanos(50) + ", p99Nanos="
+					+ getPercentileNanos(99) + ", maxNanos=" + maxNanos + "]";
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import org.springframework.stereotype.Component;
+
+// Probes from, from + 1, from + 3, from + 7, ... until it passes the key and
+// binary searches the last gap. About 2 log2(d) probes for a key d positions
+// from the start, so it beats binary search for keys near the front.
+@Component
+public class ExponentialSearchStrategy implements SearchStrategy {
+
+	private final ProbeCounts probeCounts = new ProbeCounts();
+
+	public int lowerBound(int[] sortedNumbers, int from, int to, int key) {
+		int probes = 0;
+		int below = from;
+		long probe = from;
+		long step = 1;
+		while (probe < to) {
+			probes++;
+			if (sortedNumbers[(int) probe] >= key) {
+				break;
+			}
+			below = (int) probe + 1;
+			step <<= 1;
+			probe = from + step - 1;
+		}
+		long result = BinarySearchStrategy.lowerBoundAndProbes(sortedNumbers,
+				below, (int) Math.min(probe, to), key);
+		probeCounts.record(probes + (int) (result >>> 32));
+		return (int) result;
+	}
+
+	public long getSearches() {
+		return probeCounts.getSearches();
+	}
+
+	public long getProbes() {
+		return probeCounts.getProbes();
+	}
+
+	@Override
+	public String toString() {
+		return "ExponentialSearchStrategy [" + probeCounts + "]";
+	}
+}
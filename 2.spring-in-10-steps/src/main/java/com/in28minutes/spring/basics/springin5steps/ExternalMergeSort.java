@@ -0,0 +1,215 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Sorts a file of big-endian ints that does not fit on the heap. The input
+// is read through memory-mapped regions of run-size ints, each region is
+// sorted on the heap with the configured SortAlgorithm and written to a temp
+// run file, and the runs are k-way merged into the output through a heap of
+// run cursors. Only one run buffer lives on the heap at any time.
+@Component
+public class ExternalMergeSort {
+
+	static final int DEFAULT_RUN_SIZE = 8388608;
+	// A placeholder, resolved against the environment like the property
+	static final String DEFAULT_TEMP_DIR = "${java.io.tmpdir}";
+
+	// Ints per mapped window when streaming runs and output
+	static final int WINDOW_INTS = 1 << 22;
+
+	private final SortAlgorithm sortAlgorithm;
+	private final int runSize;
+	private final Path tempDirectory;
+
+	public ExternalMergeSort(
+			@Qualifier("adaptiveSortAlgorithm") SortAlgorithm sortAlgorithm,
+			@Value("${sort.external.run-size:" + DEFAULT_RUN_SIZE + "}") int runSize,
+			@Value("${sort.external.temp-dir:" + DEFAULT_TEMP_DIR + "}") String tempDirectory) {
+		this.sortAlgorithm = sortAlgorithm;
+		this.runSize = runSize;
+		this.tempDirectory = Paths.get(tempDirectory);
+	}
+
+	public MappedIntFile sort(Path input, Path output) throws IOException {
+		List<Path> runs = new ArrayList<>();
+		try {
+			long size = writeSortedRuns(input, runs);
+			if (runs.size() == 1) {
+				// Off the cleanup list only once it has become the output
+				Files.move(runs.get(0), output,
+						StandardCopyOption.REPLACE_EXISTING);
+				runs.remove(0);
+			} else {
+				merge(runs, output, size);
+			}
+			return MappedIntFile.open(output);
+		} finally {
+			for (Path run : runs) {
+				Files.deleteIfExists(run);
+			}
+		}
+	}
+
+	private long writeSortedRuns(Path input, List<Path> runs)
+			throws IOException {
+		try (FileChannel channel = FileChannel.open(input,
+				StandardOpenOption.READ)) {
+			long bytes = channel.size();
+			if (bytes % Integer.BYTES != 0) {
+				throw new IOException(input + " is not a file of ints: "
+						+ bytes + " bytes");
+			}
+			long size = bytes / Integer.BYTES;
+			int[] buffer = new int[(int) Math.min(runSize, Math.max(size, 1))];
+			long position = 0;
+			do {
+				int count = (int) Math.min(runSize, size - position);
+				channel.map(MapMode.READ_ONLY, position * Integer.BYTES,
+						(long) count * Integer.BYTES).asIntBuffer()
+						.get(buffer, 0, count);
+				sortAlgorithm.sortInPlace(buffer, 0, count);
+
+				Path runFile = Files.createTempFile(tempDirectory, "sort-run-",
+						".bin");
+				runs.add(runFile);
+				try (IntWriter writer = new IntWriter(runFile, count)) {
+					writer.write(buffer, count);
+				}
+				position += count;
+			} while (position < size);
+			return size;
+		}
+	}
+
+	private void merge(List<Path> runs, Path output, long size)
+			throws IOException {
+		RunCursor[] heap = new RunCursor[runs.size()];
+		int heapSize = 0;
+		for (Path run : runs) {
+			RunCursor cursor = new RunCursor(MappedIntFile.open(run));
+			if (cursor.advance()) {
+				heap[heapSize++] = cursor;
+			}
+		}
+		for (int i = heapSize / 2 - 1; i >= 0; i--) {
+			siftDown(heap, i, heapSize);
+		}
+
+		try (IntWriter writer = new IntWriter(output, size)) {
+			while (heapSize > 0) {
+				RunCursor smallest = heap[0];
+				writer.write(smallest.current);
+				if (!smallest.advance()) {
+					heap[0] = heap[--heapSize];
+				}
+				siftDown(heap, 0, heapSize);
+			}
+		}
+	}
+
+	private static void siftDown(RunCursor[] heap, int i, int heapSize) {
+		RunCursor cursor = heap[i];
+		int child;
+		while ((child = 2 * i + 1) < heapSize) {
+			if (child + 1 < heapSize
+					&& heap[child + 1].current < heap[child].current) {
+				child++;
+			}
+			if (cursor.current <= heap[child].current) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = cursor;
+	}
+
+	public int getRunSize() {
+		return runSize;
+	}
+
+	private static final class RunCursor {
+
+		private final MappedIntFile run;
+		private long next;
+		int current;
+
+		RunCursor(MappedIntFile run) {
+			this.run = run;
+		}
+
+		boolean advance() {
+			if (next == run.size()) {
+				return false;
+			}
+			current = run.get(next++);
+			return true;
+		}
+	}
+
+	// Writes a known number of ints to a file through successive read-write
+	// mapped windows
+	private static final class IntWriter implements AutoCloseable {
+
+		private final FileChannel channel;
+		private final long size;
+		private long written;
+		private IntBuffer window = IntBuffer.allocate(0);
+
+		IntWriter(Path path, long size) throws IOException {
+			this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+					StandardOpenOption.READ, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			this.size = size;
+		}
+
+		void write(int value) throws IOException {
+			if (!window.hasRemaining()) {
+				nextWindow();
+			}
+			window.put(value);
+			written++;
+		}
+
+		void write(int[] values, int count) throws IOException {
+			int offset = 0;
+			while (offset < count) {
+				if (!window.hasRemaining()) {
+					nextWindow();
+				}
+				int chunk = Math.min(window.remaining(), count - offset);
+				window.put(values, offset, chunk);
+				offset += chunk;
+				written += chunk;
+			}
+		}
+
+		private void nextWindow() throws IOException {
+			long count = Math.min(WINDOW_INTS, size - written);
+			if (count <= 0) {
+				throw new IOException("More than " + size + " ints written");
+			}
+			window = channel.map(MapMode.READ_WRITE, written * Integer.BYTES,
+					count * Integer.BYTES).asIntBuffer();
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
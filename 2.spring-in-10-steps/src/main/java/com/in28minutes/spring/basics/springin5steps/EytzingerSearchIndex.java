@@ -0,0 +1,66 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+// Immutable search index over a sorted int[] stored in Eytzinger (BFS)
+// order: the children of node k live at 2k and 2k + 1, so the first levels
+// of every search share a few cache lines and the four levels below any
+// node sit next to each other (16k .. 16k + 15). No branch in the search
+// loop depends on the data. The loop runs floor(log2 n) or floor(log2 n) + 1
+// times, depending on whether the descent ends on the last, partially
+// filled level.
+//
+// search returns the same values as BinarySearchImpl.search on the sorted
+// array: the first matching index or -(insertion point) - 1. Instances never
+// change after construction and can be shared between threads.
+public final class EytzingerSearchIndex {
+
+	// 1-based: slot 0 is unused so that the child arithmetic stays simple
+	private final int[] layout;
+	// Index in the sorted array of the value stored at each layout slot
+	private final int[] sortedPositions;
+	private final int size;
+
+	private EytzingerSearchIndex(int[] sortedNumbers) {
+		this.size = sortedNumbers.length;
+		this.layout = new int[size + 1];
+		this.sortedPositions = new int[size + 1];
+		fill(sortedNumbers, 0, 1);
+	}
+
+	public static EytzingerSearchIndex of(int[] sortedNumbers) {
+		return new EytzingerSearchIndex(sortedNumbers);
+	}
+
+	// In-order walk of the implicit tree hands out the sorted values in order
+	private int fill(int[] sortedNumbers, int next, int node) {
+		if (node <= size) {
+			next = fill(sortedNumbers, next, 2 * node);
+			layout[node] = sortedNumbers[next];
+			sortedPositions[node] = next++;
+			next = fill(sortedNumbers, next, 2 * node + 1);
+		}
+		return next;
+	}
+
+	public int search(int numberToSearchFor) {
+		int[] layout = this.layout;
+		int node = 1;
+		while (node <= size) {
+			// Go right when layout[node] < numberToSearchFor, computed from the
+			// sign of the widened difference instead of a branch
+			node = 2 * node
+					+ (int) (((long) layout[node] - numberToSearchFor) >>> 63);
+		}
+		// Undo the trailing right turns (and the final left turn) to land on
+		// the last node where the search went left: the lower bound
+		node >>>= Integer.numberOfTrailingZeros(~node) + 1;
+		if (node == 0) {
+			return -(size + 1);
+		}
+		int position = sortedPositions[node];
+		return layout[node] == numberToSearchFor ? position : -(position + 1);
+	}
+
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,112 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.NameMatchMethodPointcutAdvisor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+// With instrumentation.enabled=true, wraps every SortAlgorithm and
+// BinarySearchImpl bean in a class based proxy that times the sort and
+// search operations (sort, sortInPlace, sortInto and binarySearch*) and
+// records them in CallMetrics. Class based so beans injected by their
+// concrete type, like QuickSortAlgorithm, keep working. Off by default, as
+// it puts an interceptor on the hot paths.
+//
+// Only the outermost operation on a thread is recorded: when the adaptive
+// sort hands an array to the quick sort, or a search sorts its input, the
+// inner call is part of the outer one and is not counted again.
+@Component
+public class InstrumentationBeanPostProcessor implements BeanPostProcessor {
+
+	static final boolean DEFAULT_ENABLED = false;
+
+	static final String[] OPERATIONS = { "sort", "sortInPlace", "sortInto",
+			"binarySearch*" };
+
+	private final CallMetrics callMetrics;
+	private final boolean enabled;
+	private final ThreadLocal<Boolean> recording = new ThreadLocal<>();
+
+	public InstrumentationBeanPostProcessor(CallMetrics callMetrics,
+			@Value("${instrumentation.enabled:" + DEFAULT_ENABLED + "}") boolean enabled) {
+		this.callMetrics = callMetrics;
+		this.enabled = enabled;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		if (!enabled
+				|| !(bean instanceof SortAlgorithm || bean instanceof BinarySearchImpl)) {
+			return bean;
+		}
+		ProxyFactory proxyFactory = new ProxyFactory(bean);
+		proxyFactory.setProxyTargetClass(true);
+		NameMatchMethodPointcutAdvisor advisor = new NameMatchMethodPointcutAdvisor(
+				new RecordingInterceptor(beanName));
+		advisor.setMappedNames(OPERATIONS);
+		proxyFactory.addAdvisor(advisor);
+		return proxyFactory.getProxy(bean.getClass().getClassLoader());
+	}
+
+	// Size of the input a call works on, or -1 when it has none. A (numbers,
+	// from, to) call only works on the range.
+	static long inputSize(Object[] arguments) {
+		if (arguments.length == 0) {
+			return -1;
+		}
+		Object input = arguments[0];
+		if (arguments.length == 3 && arguments[1] instanceof Integer
+				&& arguments[2] instanceof Integer) {
+			return (Integer) arguments[2] - (Integer) arguments[1];
+		}
+		if (input instanceof int[]) {
+			return ((int[]) input).length;
+		}
+		if (input instanceof long[]) {
+			return ((long[]) input).length;
+		}
+		if (input instanceof double[]) {
+			return ((double[]) input).length;
+		}
+		if (input instanceof MappedIntFile) {
+			return ((MappedIntFile) input).size();
+		}
+		return -1;
+	}
+
+	private final class RecordingInterceptor implements MethodInterceptor {
+
+		private final String beanName;
+		private final Map<Method, CallRecorder> recorders = new ConcurrentHashMap<>();
+
+		RecordingInterceptor(String beanName) {
+			this.beanName = beanName;
+		}
+
+		@Override
+		public Object invoke(MethodInvocation invocation) throws Throwable {
+			long inputSize = inputSize(invocation.getArguments());
+			if (inputSize < 0 || recording.get() != null) {
+				return invocation.proceed();
+			}
+			CallRecorder recorder = recorders.computeIfAbsent(
+					invocation.getMethod(), method -> callMetrics
+							.recorder(beanName + "." + method.getName()));
+			recording.set(Boolean.TRUE);
+			long start = System.nanoTime();
+			try {
+				return invocation.proceed();
+			} finally {
+				recorder.record(inputSize, System.nanoTime() - start);
+				recording.remove();
+			}
+		}
+	}
+}
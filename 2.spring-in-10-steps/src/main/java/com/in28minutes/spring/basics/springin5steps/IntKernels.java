@@ -0,0 +1,78 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+// The scan loops behind QuickSortAlgorithm's partitioning and the final
+// linear scan of BinarySearchImpl's lower bound. This class is the scalar
+// version. On JDK 17+ the build also compiles VectorIntKernels from
+// src/main/java17, and get() picks it when the JVM runs with
+// --add-modules jdk.incubator.vector. -Dkernels.vector=false forces the
+// scalar version. Both return exactly the same results.
+public class IntKernels {
+
+	private static final IntKernels SELECTED = load();
+
+	IntKernels() {
+	}
+
+	public static IntKernels get() {
+		return SELECTED;
+	}
+
+	// The vector version, or null when this JVM cannot run it
+	static IntKernels vector() {
+		try {
+			return (IntKernels) Class
+					.forName(IntKernels.class.getPackage().getName()
+							+ ".VectorIntKernels").getDeclaredConstructor()
+					.newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	private static IntKernels load() {
+		IntKernels vector = Boolean.parseBoolean(System.getProperty(
+				"kernels.vector", "true")) ? vector() : null;
+		return vector != null ? vector : new IntKernels();
+	}
+
+	public String getName() {
+		return "scalar";
+	}
+
+	// Ranges up to this size are counted by countLessThan instead of being
+	// halved further
+	int linearScanThreshold() {
+		return 16;
+	}
+
+	// Number of elements of [from, to) that are < key
+	int countLessThan(int[] a, int from, int to, int key) {
+		int count = 0;
+		for (int i = from; i < to; i++) {
+			count += (int) (((long) a[i] - key) >>> 63);
+		}
+		return count;
+	}
+
+	// First index in [from, to) whose value is >= pivot, or to
+	int nextNotLess(int[] a, int from, int to, int pivot) {
+		while (from < to && a[from] < pivot) {
+			from++;
+		}
+		return from;
+	}
+
+	// Last index in [from, to) whose value is <= pivot, or from - 1
+	int previousNotGreater(int[] a, int from, int to, int pivot) {
+		int i = to - 1;
+		while (i >= from && a[i] > pivot) {
+			i--;
+		}
+		return i;
+	}
+
+	@Override
+	public String toString() {
+		return getName();
+	}
+}
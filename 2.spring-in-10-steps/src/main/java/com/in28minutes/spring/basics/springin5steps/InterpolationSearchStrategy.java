@@ -0,0 +1,70 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import org.springframework.stereotype.Component;
+
+// Guesses the key's position from the values at both ends of the range:
+// O(log log n) probes on uniformly spread keys. Guarded against skewed data
+// by adding a halving step whenever a guess fails to cut the range in half,
+// so it never needs more than about twice the probes of binary search.
+@Component
+public class InterpolationSearchStrategy implements SearchStrategy {
+
+	private static final IntKernels KERNELS = IntKernels.get();
+
+	private final ProbeCounts probeCounts = new ProbeCounts();
+
+	public int lowerBound(int[] sortedNumbers, int from, int to, int key) {
+		int linearScanThreshold = KERNELS.linearScanThreshold();
+		int probes = 0;
+		while (to - from > linearScanThreshold) {
+			int low = sortedNumbers[from];
+			int high = sortedNumbers[to - 1];
+			probes += 2;
+			if (key <= low) {
+				to = from;
+				break;
+			}
+			if (key > high) {
+				from = to;
+				break;
+			}
+			// low < key <= high, so the guess lands in [from, to - 1]
+			int span = to - from;
+			int guess = from
+					+ (int) ((double) ((long) key - low)
+							/ ((long) high - low) * (span - 1));
+			probes++;
+			if (sortedNumbers[guess] < key) {
+				from = guess + 1;
+			} else {
+				to = guess;
+			}
+			if (to - from > span >>> 1 && to - from > linearScanThreshold) {
+				int mid = (from + to) >>> 1;
+				probes++;
+				if (sortedNumbers[mid] < key) {
+					from = mid + 1;
+				} else {
+					to = mid;
+				}
+			}
+		}
+		probes += to - from;
+		int index = from + KERNELS.countLessThan(sortedNumbers, from, to, key);
+		probeCounts.record(probes);
+		return index;
+	}
+
+	public long getSearches() {
+		return probeCounts.getSearches();
+	}
+
+	public long getProbes() {
+		return probeCounts.getProbes();
+	}
+
+	@Override
+	public String toString() {
+		return "InterpolationSearchStrategy [" + probeCounts + "]";
+	}
+}
@@ -0,0 +1,71 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Read-only view of a file of big-endian ints (the DataOutputStream format)
+// through memory-mapped segments, so files larger than the heap, and larger
+// than a single 2 GB mapping, can be read by index without loading them.
+public final class MappedIntFile {
+
+	static final int SEGMENT_SHIFT = 28;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+	private final Path path;
+	private final IntBuffer[] segments;
+	private final long size;
+
+	private MappedIntFile(Path path, IntBuffer[] segments, long size) {
+		this.path = path;
+		this.segments = segments;
+		this.size = size;
+	}
+
+	public static MappedIntFile open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path,
+				StandardOpenOption.READ)) {
+			long bytes = channel.size();
+			if (bytes % Integer.BYTES != 0) {
+				throw new IOException(path + " is not a file of ints: " + bytes
+						+ " bytes");
+			}
+			long size = bytes / Integer.BYTES;
+			IntBuffer[] segments = new IntBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+			for (int i = 0; i < segments.length; i++) {
+				long first = (long) i << SEGMENT_SHIFT;
+				long count = Math.min(size - first, 1L << SEGMENT_SHIFT);
+				// The mapping stays valid after the channel is closed
+				segments[i] = channel.map(MapMode.READ_ONLY,
+						first * Integer.BYTES, count * Integer.BYTES)
+						.asIntBuffer();
+			}
+			return new MappedIntFile(path, segments, size);
+		}
+	}
+
+	public int get(long index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index
+					+ " out of bounds for size " + size);
+		}
+		return segments[(int) (index >>> SEGMENT_SHIFT)]
+				.get((int) (index & SEGMENT_MASK));
+	}
+
+	public long size() {
+		return size;
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	@Override
+	public String toString() {
+		return "MappedIntFile [path=" + path + ", size=" + size + "]";
+	}
+}
@@ -0,0 +1,224 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Stable top-down merge sort. The range is copied once into a scratch buffer
+// from the ScratchBufferPool, and every level then merges from one array into
+// the other, so there is no copy back per merge. Runs that are already in
+// order are copied instead of merged.
+//
+// Ranges larger than the parallel threshold sort their halves as
+// RecursiveActions and merge them in parallel too: the longer run is split
+// at its middle, the other run at the matching position, and both pairs are
+// merged independently. Ties always go to the left run.
+@Component
+public class MergeSortAlgorithm implements SortAlgorithm {
+
+	static final int INSERTION_SORT_THRESHOLD = 32;
+	static final int DEFAULT_PARALLELISM = 0;
+	static final int DEFAULT_PARALLEL_THRESHOLD = 65536;
+
+	private final ScratchBufferPool scratchBuffers;
+	private final ForkJoinPool pool;
+	private final boolean ownsPool;
+	private final int parallelThreshold;
+
+	@Autowired
+	public MergeSortAlgorithm(ScratchBufferPool scratchBuffers,
+			@Value("${sort.merge.parallelism:" + DEFAULT_PARALLELISM + "}") int parallelism,
+			@Value("${sort.merge.parallel-threshold:" + DEFAULT_PARALLEL_THRESHOLD + "}") int parallelThreshold) {
+		this(scratchBuffers, parallelism > 0 ? new ForkJoinPool(parallelism)
+				: ForkJoinPool.commonPool(), parallelism > 0, parallelThreshold);
+	}
+
+	public MergeSortAlgorithm(ScratchBufferPool scratchBuffers,
+			ForkJoinPool pool, int parallelThreshold) {
+		this(scratchBuffers, pool, false, parallelThreshold);
+	}
+
+	private MergeSortAlgorithm(ScratchBufferPool scratchBuffers,
+			ForkJoinPool pool, boolean ownsPool, int parallelThreshold) {
+		this.scratchBuffers = scratchBuffers;
+		this.pool = pool;
+		this.ownsPool = ownsPool;
+		this.parallelThreshold = Math.max(INSERTION_SORT_THRESHOLD,
+				parallelThreshold);
+	}
+
+	public void sortInPlace(int[] numbers, int from, int to) {
+		int n = to - from;
+		if (n <= INSERTION_SORT_THRESHOLD) {
+			Sorting.insertionSort(numbers, from, to);
+			return;
+		}
+		int[] scratch = scratchBuffers.acquire(n);
+		try {
+			System.arraycopy(numbers, from, scratch, 0, n);
+			if (n > parallelThreshold) {
+				pool.invoke(new SortTask(scratch, 0, numbers, from, n));
+			} else {
+				sort(scratch, 0, numbers, from, n);
+			}
+		} finally {
+			scratchBuffers.release(scratch);
+		}
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (ownsPool) {
+			pool.shutdown();
+		}
+	}
+
+	// src[srcFrom, srcFrom + n) and dest[destFrom, destFrom + n) hold the same
+	// values on entry; on return the dest range is sorted and the src range
+	// is scrambled
+	private static void sort(int[] src, int srcFrom, int[] dest,
+			int destFrom, int n) {
+		if (n <= INSERTION_SORT_THRESHOLD) {
+			Sorting.insertionSort(dest, destFrom, destFrom + n);
+			return;
+		}
+		int half = n >>> 1;
+		sort(dest, destFrom, src, srcFrom, half);
+		sort(dest, destFrom + half, src, srcFrom + half, n - half);
+		merge(src, srcFrom, srcFrom + half, srcFrom + half, srcFrom + n, dest,
+				destFrom);
+	}
+
+	// Merges the sorted runs src[leftFrom, leftTo) and src[rightFrom, rightTo)
+	// into dest starting at out
+	static void merge(int[] src, int leftFrom, int leftTo, int rightFrom,
+			int rightTo, int[] dest, int out) {
+		int i = leftFrom;
+		int j = rightFrom;
+		if (i < leftTo && j < rightTo && src[leftTo - 1] > src[j]) {
+			while (i < leftTo && j < rightTo) {
+				dest[out++] = src[j] < src[i] ? src[j++] : src[i++];
+			}
+		}
+		System.arraycopy(src, i, dest, out, leftTo - i);
+		System.arraycopy(src, j, dest, out + leftTo - i, rightTo - j);
+	}
+
+	// First index in [from, to) whose value is >= key, or > key when
+	// strict, so equal values stay on the side that keeps the merge stable
+	private static int bound(int[] a, int from, int to, int key,
+			boolean strict) {
+		while (from < to) {
+			int mid = (from + to) >>> 1;
+			if (a[mid] < key || strict && a[mid] == key) {
+				from = mid + 1;
+			} else {
+				to = mid;
+			}
+		}
+		return from;
+	}
+
+	private final class SortTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] src;
+		private final int srcFrom;
+		private final int[] dest;
+		private final int destFrom;
+		private final int n;
+
+		SortTask(int[] src, int srcFrom, int[] dest, int destFrom, int n) {
+			this.src = src;
+			this.srcFrom = srcFrom;
+			this.dest = dest;
+			this.destFrom = destFrom;
+			this.n = n;
+		}
+
+		@Override
+		protected void compute() {
+			if (n <= parallelThreshold) {
+				sort(src, srcFrom, dest, destFrom, n);
+				return;
+			}
+			int half = n >>> 1;
+			invokeAll(new SortTask(dest, destFrom, src, srcFrom, half),
+					new SortTask(dest, destFrom + half, src, srcFrom + half, n
+							- half));
+			new MergeTask(src, srcFrom, srcFrom + half, srcFrom + half,
+					srcFrom + n, dest, destFrom).compute();
+		}
+	}
+
+	private final class MergeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] src;
+		private final int leftFrom;
+		private final int leftTo;
+		private final int rightFrom;
+		private final int rightTo;
+		private final int[] dest;
+		private final int out;
+
+		MergeTask(int[] src, int leftFrom, int leftTo, int rightFrom,
+				int rightTo, int[] dest, int out) {
+			this.src = src;
+			this.leftFrom = leftFrom;
+			this.leftTo = leftTo;
+			this.rightFrom = rightFrom;
+			this.rightTo = rightTo;
+			this.dest = dest;
+			this.out = out;
+		}
+
+		@Override
+		protected void compute() {
+			int leftLength = leftTo - leftFrom;
+			int rightLength = rightTo - rightFrom;
+			if (leftLength + rightLength <= parallelThreshold) {
+				merge(src, leftFrom, leftTo, rightFrom, rightTo, dest, out);
+				return;
+			}
+			int leftSplit;
+			int rightSplit;
+			if (leftLength >= rightLength) {
+				// Right values equal to the left middle go after it
+				leftSplit = (leftFrom + leftTo) >>> 1;
+				rightSplit = bound(src, rightFrom, rightTo, src[leftSplit],
+						false);
+			} else {
+				// Left values equal to the right middle go before it
+				rightSplit = (rightFrom + rightTo) >>> 1;
+				leftSplit = bound(src, leftFrom, leftTo, src[rightSplit], true);
+			}
+			int secondOut = out + (leftSplit - leftFrom)
+					+ (rightSplit - rightFrom);
+			invokeAll(new MergeTask(src, leftFrom, leftSplit, rightFrom,
+					rightSplit, dest, out), new MergeTask(src, leftSplit,
+					leftTo, rightSplit, rightTo, dest, secondOut));
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "MergeSortAlgorithm [parallelism=" + pool.getParallelism()
+				+ ", parallelThreshold=" + parallelThreshold + "]";
+	}
+}
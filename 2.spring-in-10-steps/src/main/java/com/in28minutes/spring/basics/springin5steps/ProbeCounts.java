@@ -0,0 +1,28 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Search and probe counters shared by the SearchStrategy implementations
+final class ProbeCounts {
+
+	private final LongAdder searches = new LongAdder();
+	private final LongAdder probes = new LongAdder();
+
+	void record(int probeCount) {
+		searches.increment();
+		probes.add(probeCount);
+	}
+
+	long getSearches() {
+		return searches.sum();
+	}
+
+	long getProbes() {
+		return probes.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "searches=" + getSearches() + ", probes=" + getProbes();
+	}
+}
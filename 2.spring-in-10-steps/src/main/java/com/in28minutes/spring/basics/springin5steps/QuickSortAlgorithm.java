@@ -1,11 +1,285 @@
 package com.in28minutes.spring.basics.springin5steps;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+// Introsort style quick sort: median-of-three Hoare partitioning, insertion
+// sort for small ranges and heap sort once the recursion gets too deep.
+// Ranges larger than the parallel threshold are split into RecursiveActions
+// on the configured ForkJoinPool.
+//
+// Three-way (Dutch national flag) partitioning groups every key equal to the
+// pivot in one pass and drops it from the recursion, so input with k distinct
+// values takes O(n log k). In AUTO mode it is used for the whole sort when a
+// sample of the input shows few distinct values, and for any range whose
+// pivot equals the element just before it - that element is <= the whole
+// range, so the range holds a run of keys equal to it.
+//
+// The two-way partition scans run on IntKernels, vectorized where the JVM
+// supports it.
 @Component
 public class QuickSortAlgorithm implements SortAlgorithm {
-	public int[] sort(int[] numbers) {
-		// Logic for Quick Sort
-		return numbers;
+
+	public enum Partitioning {
+		TWO_WAY, THREE_WAY, AUTO
+	}
+
+	static final int DEFAULT_PARALLELISM = 0;
+	static final String DEFAULT_PARTITIONING = "AUTO";
+
+	private static final IntKernels KERNELS = IntKernels.get();
+	private static final int CARDINALITY_SAMPLE_SIZE = 64;
+	private static final int MIN_CARDINALITY_SAMPLE_RANGE = 4096;
+
+	private final ForkJoinPool pool;
+	private final boolean ownsPool;
+	private final int insertionSortThreshold;
+	private final int parallelThreshold;
+	private final Partitioning partitioning;
+
+	@Autowired
+	public QuickSortAlgorithm(
+			@Value("${sort.quick.parallelism:" + DEFAULT_PARALLELISM + "}") int parallelism,
+			SortThresholds thresholds,
+			@Value("${sort.quick.partitioning:" + DEFAULT_PARTITIONING + "}") Partitioning partitioning) {
+		this(parallelism > 0 ? new ForkJoinPool(parallelism) : ForkJoinPool
+				.commonPool(), parallelism > 0, thresholds
+				.getInsertionSortThreshold(), thresholds.getParallelThreshold(),
+				partitioning);
+	}
+
+	public QuickSortAlgorithm(ForkJoinPool pool, int insertionSortThreshold,
+			int parallelThreshold) {
+		this(pool, insertionSortThreshold, parallelThreshold, Partitioning.AUTO);
+	}
+
+	public QuickSortAlgorithm(ForkJoinPool pool, int insertionSortThreshold,
+			int parallelThreshold, Partitioning partitioning) {
+		this(pool, false, insertionSortThreshold, parallelThreshold,
+				partitioning);
+	}
+
+	private QuickSortAlgorithm(ForkJoinPool pool, boolean ownsPool,
+			int insertionSortThreshold, int parallelThreshold,
+			Partitioning partitioning) {
+		this.pool = pool;
+		this.ownsPool = ownsPool;
+		this.partitioning = partitioning;
+		// Median-of-three partitioning needs at least three elements
+		this.insertionSortThreshold = Math.max(3, insertionSortThreshold);
+		this.parallelThreshold = Math.max(this.insertionSortThreshold,
+				parallelThreshold);
+	}
+
+	public void sortInPlace(int[] numbers, int from, int to) {
+		int depthLimit = Sorting.depthLimit(to - from);
+		boolean threeWay = isThreeWay(numbers, from, to);
+		if (to - from > parallelThreshold) {
+			pool.invoke(new SortTask(numbers, from, to, depthLimit, threeWay,
+					true));
+		} else {
+			sortSequential(numbers, from, to, depthLimit, threeWay, true);
+		}
+	}
+
+	// Sorts on the calling thread whatever the size
+	public void sortSequentially(int[] numbers, int from, int to) {
+		sortSequential(numbers, from, to, Sorting.depthLimit(to - from),
+				isThreeWay(numbers, from, to), true);
+	}
+
+	private boolean isThreeWay(int[] numbers, int from, int to) {
+		return partitioning == Partitioning.THREE_WAY
+				|| partitioning == Partitioning.AUTO
+				&& isLowCardinality(numbers, from, to);
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	public int getInsertionSortThreshold() {
+		return insertionSortThreshold;
+	}
+
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	public Partitioning getPartitioning() {
+		return partitioning;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (ownsPool) {
+			pool.shutdown();
+		}
+	}
+
+	// leftmost is false when a[from - 1] is known to be <= every element of
+	// the range
+	private void sortSequential(int[] a, int from, int to, int depthLimit,
+			boolean threeWay, boolean leftmost) {
+		// Recurse into the smaller side, loop on the larger one so the stack
+		// stays O(log n)
+		while (to - from > insertionSortThreshold) {
+			if (depthLimit-- == 0) {
+				Sorting.heapSort(a, from, to);
+				return;
+			}
+			long bounds = partitionStep(a, from, to, threeWay, leftmost);
+			int lower = (int) (bounds >>> 32);
+			int upper = (int) bounds;
+			if (lower - from < to - upper) {
+				sortSequential(a, from, lower, depthLimit, threeWay, leftmost);
+				from = upper;
+				leftmost = false;
+			} else {
+				sortSequential(a, upper, to, depthLimit, threeWay, false);
+				to = lower;
+			}
+		}
+		Sorting.insertionSort(a, from, to);
+	}
+
+	// Partitions [from, to) and returns lower << 32 | upper: [from, lower) and
+	// [upper, to) are left to sort, everything in between is in place.
+	private long partitionStep(int[] a, int from, int to, boolean threeWay,
+			boolean leftmost) {
+		int pivot = medianOfThree(a, from, to);
+		if (threeWay || partitioning == Partitioning.AUTO && !leftmost
+				&& a[from - 1] == pivot) {
+			return partition3(a, from, to, pivot);
+		}
+		int split = partition(a, from, to, pivot);
+		return (long) split << 32 | split;
+	}
+
+	// Returns split such that every element of [from, split) is <= every
+	// element of [split, to); both sides are non-empty.
+	static int partition(int[] a, int from, int to) {
+		return partition(a, from, to, medianOfThree(a, from, to));
+	}
+
+	// Returns lower << 32 | upper such that [from, lower) is < pivot,
+	// [lower, upper) == pivot and [upper, to) is > pivot. The middle part is
+	// never empty.
+	static long partition3(int[] a, int from, int to, int pivot) {
+		int lower = from;
+		int i = from;
+		int upper = to;
+		while (i < upper) {
+			int value = a[i];
+			if (value < pivot) {
+				Sorting.swap(a, lower++, i++);
+			} else if (value > pivot) {
+				Sorting.swap(a, i, --upper);
+			} else {
+				i++;
+			}
+		}
+		return (long) lower << 32 | upper;
+	}
+
+	// Counts the distinct values among evenly spaced samples; without
+	// allocating, so quadratic in the sample size.
+	static boolean isLowCardinality(int[] a, int from, int to) {
+		if (to - from < MIN_CARDINALITY_SAMPLE_RANGE) {
+			return false;
+		}
+		int step = (to - from) / CARDINALITY_SAMPLE_SIZE;
+		int distinct = 0;
+		for (int i = 0; i < CARDINALITY_SAMPLE_SIZE; i++) {
+			int value = a[from + i * step];
+			int j = 0;
+			while (j < i && a[from + j * step] != value) {
+				j++;
+			}
+			if (j == i) {
+				distinct++;
+			}
+		}
+		return distinct <= CARDINALITY_SAMPLE_SIZE / 4;
+	}
+
+	// Orders a[from], a[mid] and a[last] and returns the median
+	private static int medianOfThree(int[] a, int from, int to) {
+		int last = to - 1;
+		int mid = (from + last) >>> 1;
+		if (a[mid] < a[from]) {
+			Sorting.swap(a, mid, from);
+		}
+		if (a[last] < a[from]) {
+			Sorting.swap(a, last, from);
+		}
+		if (a[last] < a[mid]) {
+			Sorting.swap(a, last, mid);
+		}
+		return a[mid];
+	}
+
+	// The range must hold an element <= pivot at from and >= pivot at to - 1
+	private static int partition(int[] a, int from, int to, int pivot) {
+		int i = from;
+		int j = to - 1;
+		while (true) {
+			i = KERNELS.nextNotLess(a, i, to, pivot);
+			j = KERNELS.previousNotGreater(a, from, j + 1, pivot);
+			if (i >= j) {
+				return j + 1;
+			}
+			Sorting.swap(a, i++, j--);
+		}
+	}
+
+	private final class SortTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] a;
+		private final int from;
+		private final int to;
+		private final int depthLimit;
+		private final boolean threeWay;
+		private final boolean leftmost;
+
+		SortTask(int[] a, int from, int to, int depthLimit, boolean threeWay,
+				boolean leftmost) {
+			this.a = a;
+			this.from = from;
+			this.to = to;
+			this.depthLimit = depthLimit;
+			this.threeWay = threeWay;
+			this.leftmost = leftmost;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= parallelThreshold || depthLimit == 0) {
+				sortSequential(a, from, to, depthLimit, threeWay, leftmost);
+				return;
+			}
+			long bounds = partitionStep(a, from, to, threeWay, leftmost);
+			int lower = (int) (bounds >>> 32);
+			int upper = (int) bounds;
+			invokeAll(new SortTask(a, from, lower, depthLimit - 1, threeWay,
+					leftmost), new SortTask(a, upper, to, depthLimit - 1,
+					threeWay, false));
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "QuickSortAlgorithm [parallelism=" + pool.getParallelism()
+				+ ", insertionSortThreshold=" + insertionSortThreshold
+				+ ", parallelThreshold=" + parallelThreshold + ", partitioning="
+				+ partitioning + ", kernels=" + KERNELS + "]";
 	}
 }
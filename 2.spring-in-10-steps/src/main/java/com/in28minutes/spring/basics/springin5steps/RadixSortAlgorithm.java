@@ -0,0 +1,284 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import java.util.Arrays;
+
+import org.springframework.stereotype.Component;
+
+// LSD radix sort over the four bytes of an int. The top byte has its sign bit
+// flipped so negative numbers order before positive ones. All four
+// histograms are built in a single read of the input, passes in which every
+// element shares the same byte are skipped, and the scratch buffer is reused
+// between calls on the same thread. Buffers larger than
+// MAX_RETAINED_ELEMENTS are dropped after the call, so one huge sort does not
+// pin its scratch space on the thread for good.
+//
+// The same technique backs the unboxed long[] and double[] sorts and argsort,
+// which never create wrapper objects.
+@Component
+public class RadixSortAlgorithm implements SortAlgorithm {
+
+	static final int INSERTION_SORT_THRESHOLD = 64;
+	static final int MAX_RETAINED_ELEMENTS = 1 << 20;
+
+	private static final int RADIX = 256;
+	private static final int PASSES = 4;
+	private static final int LONG_PASSES = 8;
+
+	private final ThreadLocal<Buffers> buffers = ThreadLocal
+			.withInitial(Buffers::new);
+
+	public void sortInPlace(int[] numbers, int from, int to) {
+		int n = to - from;
+		if (n <= INSERTION_SORT_THRESHOLD) {
+			Sorting.insertionSort(numbers, from, to);
+			return;
+		}
+
+		Buffers buffers = this.buffers.get();
+		try {
+			sortInts(numbers, from, to, buffers);
+		} finally {
+			buffers.trim();
+		}
+	}
+
+	private static void sortInts(int[] numbers, int from, int to,
+			Buffers buffers) {
+		int n = to - from;
+		int[] counts = buffers.counts();
+		int[] scratch = buffers.scratch(n);
+		Arrays.fill(counts, 0);
+
+		for (int i = from; i < to; i++) {
+			int value = numbers[i];
+			counts[value & 0xff]++;
+			counts[RADIX + ((value >>> 8) & 0xff)]++;
+			counts[2 * RADIX + ((value >>> 16) & 0xff)]++;
+			counts[3 * RADIX + ((value >>> 24) ^ 0x80)]++;
+		}
+
+		// Passes ping-pong between numbers[from, to) and scratch[0, n)
+		int[] src = numbers;
+		int srcOffset = from;
+		int[] dst = scratch;
+		int dstOffset = 0;
+		for (int pass = 0; pass < PASSES; pass++) {
+			int base = pass * RADIX;
+			int shift = pass * 8;
+			int flip = pass == PASSES - 1 ? 0x80 : 0;
+			if (toOffsets(counts, base, n, dstOffset)) {
+				continue;
+			}
+			for (int i = srcOffset; i < srcOffset + n; i++) {
+				int value = src[i];
+				dst[counts[base + (((value >>> shift) & 0xff) ^ flip)]++] = value;
+			}
+			int[] tmp = src;
+			src = dst;
+			dst = tmp;
+			int tmpOffset = srcOffset;
+			srcOffset = dstOffset;
+			dstOffset = tmpOffset;
+		}
+		if (src != numbers) {
+			System.arraycopy(src, srcOffset, numbers, from, n);
+		}
+	}
+
+	public long[] sort(long[] numbers) {
+		sortInPlace(numbers, 0, numbers.length);
+		return numbers;
+	}
+
+	public void sortInPlace(long[] numbers, int from, int to) {
+		Buffers buffers = this.buffers.get();
+		try {
+			sortLongs(numbers, from, to, buffers, 0);
+		} finally {
+			buffers.trim();
+		}
+	}
+
+	// Same order as Arrays.sort(double[]): -0.0 before 0.0 and every NaN last
+	public double[] sort(double[] numbers) {
+		sortInPlace(numbers, 0, numbers.length);
+		return numbers;
+	}
+
+	public void sortInPlace(double[] numbers, int from, int to) {
+		int n = to - from;
+		Buffers buffers = this.buffers.get();
+		try {
+			long[] keys = buffers.keys(n);
+			for (int i = 0; i < n; i++) {
+				keys[i] = orderedBits(Double.doubleToLongBits(numbers[from + i]));
+			}
+			sortLongs(keys, 0, n, buffers, 0);
+			for (int i = 0; i < n; i++) {
+				numbers[from + i] = Double.longBitsToDouble(orderedBits(keys[i]));
+			}
+		} finally {
+			buffers.trim();
+		}
+	}
+
+	// Returns the permutation that sorts keys: keys[permutation[0]] is the
+	// smallest key. Equal keys keep their original relative order.
+	public int[] argsort(int[] keys) {
+		int n = keys.length;
+		Buffers buffers = this.buffers.get();
+		try {
+			long[] packed = buffers.keys(n);
+			for (int i = 0; i < n; i++) {
+				packed[i] = ((long) keys[i] << 32) | i;
+			}
+			// The positions start out in order and LSD passes are stable, so
+			// only the four key bytes need sorting
+			sortLongs(packed, 0, n, buffers, 4);
+			int[] permutation = new int[n];
+			for (int i = 0; i < n; i++) {
+				permutation[i] = (int) packed[i];
+			}
+			return permutation;
+		} finally {
+			buffers.trim();
+		}
+	}
+
+	// Bytes of scratch space the calling thread keeps between calls
+	long retainedBytes() {
+		return buffers.get().retainedBytes();
+	}
+
+	// Maps IEEE 754 bits to a long with the same signed order as the doubles
+	// by flipping everything but the sign bit of negative values. The mapping
+	// is its own inverse.
+	private static long orderedBits(long bits) {
+		return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+	}
+
+	// LSD radix sort of numbers[from, to) on bytes firstByte to 7, ping-ponging
+	// with the long scratch buffer
+	private static void sortLongs(long[] numbers, int from, int to,
+			Buffers buffers, int firstByte) {
+		int n = to - from;
+		if (n <= INSERTION_SORT_THRESHOLD) {
+			Sorting.insertionSort(numbers, from, to);
+			return;
+		}
+
+		int[] counts = buffers.longCounts();
+		long[] scratch = buffers.longScratch(n);
+		Arrays.fill(counts, 0);
+
+		for (int i = from; i < to; i++) {
+			long value = numbers[i];
+			for (int pass = firstByte; pass < LONG_PASSES; pass++) {
+				counts[pass * RADIX + longDigit(value, pass)]++;
+			}
+		}
+
+		long[] src = numbers;
+		int srcOffset = from;
+		long[] dst = scratch;
+		int dstOffset = 0;
+		for (int pass = firstByte; pass < LONG_PASSES; pass++) {
+			int base = pass * RADIX;
+			if (toOffsets(counts, base, n, dstOffset)) {
+				continue;
+			}
+			for (int i = srcOffset; i < srcOffset + n; i++) {
+				long value = src[i];
+				dst[counts[base + longDigit(value, pass)]++] = value;
+			}
+			long[] tmp = src;
+			src = dst;
+			dst = tmp;
+			int tmpOffset = srcOffset;
+			srcOffset = dstOffset;
+			dstOffset = tmpOffset;
+		}
+		if (src != numbers) {
+			System.arraycopy(src, srcOffset, numbers, from, n);
+		}
+	}
+
+	private static int longDigit(long value, int pass) {
+		int digit = (int) (value >>> (pass * 8)) & 0xff;
+		return pass == LONG_PASSES - 1 ? digit ^ 0x80 : digit;
+	}
+
+	// Turns the histogram of one pass into starting offsets in the destination.
+	// Returns true when all elements fall into a single bucket, in which case
+	// the pass would not move anything.
+	private static boolean toOffsets(int[] counts, int base, int n, int start) {
+		int offset = start;
+		for (int bucket = base; bucket < base + RADIX; bucket++) {
+			int count = counts[bucket];
+			if (count == n) {
+				return true;
+			}
+			counts[bucket] = offset;
+			offset += count;
+		}
+		return false;
+	}
+
+	private static final class Buffers {
+
+		private final int[] counts = new int[PASSES * RADIX];
+		private int[] scratch = new int[0];
+		private int[] longCounts;
+		private long[] longScratch = new long[0];
+		private long[] keys = new long[0];
+
+		int[] counts() {
+			return counts;
+		}
+
+		int[] scratch(int size) {
+			if (scratch.length < size) {
+				scratch = new int[size];
+			}
+			return scratch;
+		}
+
+		int[] longCounts() {
+			if (longCounts == null) {
+				longCounts = new int[LONG_PASSES * RADIX];
+			}
+			return longCounts;
+		}
+
+		long[] longScratch(int size) {
+			if (longScratch.length < size) {
+				longScratch = new long[size];
+			}
+			return longScratch;
+		}
+
+		long[] keys(int size) {
+			if (keys.length < size) {
+				keys = new long[size];
+			}
+			return keys;
+		}
+
+		void trim() {
+			if (scratch.length > MAX_RETAINED_ELEMENTS) {
+				scratch = new int[0];
+			}
+			if (longScratch.length > MAX_RETAINED_ELEMENTS) {
+				longScratch = new long[0];
+			}
+			if (keys.length > MAX_RETAINED_ELEMENTS) {
+				keys = new long[0];
+			}
+		}
+
+		long retainedBytes() {
+			return 4L * scratch.length + 8L * longScratch.length
+					+ 8L * keys.length;
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Per-thread int[] scratch buffers in power-of-two size classes. A thread
+// gets back the buffer it released last for the same size class, so a
+// repeated sort on one thread allocates nothing after the first call. A
+// background task drops buffers that have not been used for idle-millis,
+// also for threads that have gone quiet or died.
+@Component
+public class ScratchBufferPool {
+
+	static final long DEFAULT_IDLE_MILLIS = 30000;
+
+	private static final int MIN_SIZE_CLASS = 6;
+	private static final int SIZE_CLASSES = 31;
+
+	private final long idleNanos;
+	private final Set<ThreadBuffers> threads = ConcurrentHashMap.newKeySet();
+	private final ThreadLocal<ThreadBuffers> buffers = ThreadLocal
+			.withInitial(this::register);
+	private final ScheduledExecutorService trimmer;
+
+	private final LongAdder allocations = new LongAdder();
+	private final LongAdder trimmed = new LongAdder();
+
+	public ScratchBufferPool(
+			@Value("${sort.scratch.idle-millis:" + DEFAULT_IDLE_MILLIS + "}") long idleMillis) {
+		this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+		if (idleMillis > 0) {
+			trimmer = Executors.newSingleThreadScheduledExecutor(task -> {
+				Thread thread = new Thread(task, "scratch-buffer-trimmer");
+				thread.setDaemon(true);
+				return thread;
+			});
+			long period = Math.max(1, idleMillis / 2);
+			trimmer.scheduleWithFixedDelay(this::trim, period, period,
+					TimeUnit.MILLISECONDS);
+		} else {
+			trimmer = null;
+		}
+	}
+
+	// A buffer of at least size ints; its contents are undefined
+	public int[] acquire(int size) {
+		int sizeClass = sizeClass(size);
+		if (sizeClass >= SIZE_CLASSES) {
+			return new int[size];
+		}
+		int[] buffer = buffers.get().take(sizeClass);
+		if (buffer == null) {
+			allocations.increment();
+			buffer = new int[1 << sizeClass];
+		}
+		return buffer;
+	}
+
+	// Hands a buffer from acquire back to the calling thread's pool
+	public void release(int[] buffer) {
+		int sizeClass = sizeClass(buffer.length);
+		if (sizeClass < SIZE_CLASSES && buffer.length == 1 << sizeClass) {
+			buffers.get().put(sizeClass, buffer);
+		}
+	}
+
+	// Drops every buffer that has been idle for longer than idle-millis
+	public void trim() {
+		long now = System.nanoTime();
+		for (ThreadBuffers threadBuffers : threads) {
+			boolean dead = threadBuffers.thread.get() == null;
+			trimmed.add(threadBuffers.trim(now, dead ? Long.MIN_VALUE
+					: idleNanos));
+			if (dead) {
+				threads.remove(threadBuffers);
+			}
+		}
+	}
+
+	public long getAllocations() {
+		return allocations.sum();
+	}
+
+	public long getTrimmed() {
+		return trimmed.sum();
+	}
+
+	public long getRetainedBytes() {
+		long bytes = 0;
+		for (ThreadBuffers threadBuffers : threads) {
+			bytes += threadBuffers.retainedBytes();
+		}
+		return bytes;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (trimmer != null) {
+			trimmer.shutdownNow();
+		}
+	}
+
+	static int sizeClass(int size) {
+		return Math.max(MIN_SIZE_CLASS,
+				32 - Integer.numberOfLeadingZeros(Math.max(1, size) - 1));
+	}
+
+	private ThreadBuffers register() {
+		ThreadBuffers threadBuffers = new ThreadBuffers(Thread.currentThread());
+		threads.add(threadBuffers);
+		return threadBuffers;
+	}
+
+	// Written by the owning thread, cleared by the trimmer; the atomic slots
+	// make sure a buffer is never handed out and trimmed at the same time
+	private static final class ThreadBuffers {
+
+		private final WeakReference<Thread> thread;
+		private final AtomicReferenceArray<int[]> slots = new AtomicReferenceArray<>(
+				SIZE_CLASSES);
+		private final AtomicLongArray lastUsed = new AtomicLongArray(
+				SIZE_CLASSES);
+
+		ThreadBuffers(Thread thread) {
+			this.thread = new WeakReference<>(thread);
+		}
+
+		int[] take(int sizeClass) {
+			lastUsed.lazySet(sizeClass, System.nanoTime());
+			return slots.getAndSet(sizeClass, null);
+		}
+
+		void put(int sizeClass, int[] buffer) {
+			lastUsed.lazySet(sizeClass, System.nanoTime());
+			slots.lazySet(sizeClass, buffer);
+		}
+
+		int trim(long now, long idleNanos) {
+			int dropped = 0;
+			for (int i = 0; i < SIZE_CLASSES; i++) {
+				int[] buffer = slots.get(i);
+				if (buffer != null && now - lastUsed.get(i) > idleNanos
+						&& slots.compareAndSet(i, buffer, null)) {
+					dropped++;
+				}
+			}
+			return dropped;
+		}
+
+		long retainedBytes() {
+			long bytes = 0;
+			for (int i = 0; i < SIZE_CLASSES; i++) {
+				int[] buffer = slots.get(i);
+				if (buffer != null) {
+					bytes += 4L * buffer.length;
+				}
+			}
+			return bytes;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ScratchBufferPool [allocations=" + getAllocations()
+				+ ", trimmed=" + getTrimmed() + ", retainedBytes="
+				+ getRetainedBytes() + "]";
+	}
+}
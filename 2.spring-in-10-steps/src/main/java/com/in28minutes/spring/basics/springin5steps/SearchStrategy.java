@@ -0,0 +1,22 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+// How BinarySearchImpl finds a key in a sorted range. Every strategy returns
+// the same index and differs only in the elements it probes on the way,
+// which it counts.
+public interface SearchStrategy {
+
+	// First index in [from, to) whose value is >= key, or to
+	public int lowerBound(int[] sortedNumbers, int from, int to, int key);
+
+	// Same over the whole of a sorted array handed out by SortedArrayCache
+	public default int lowerBound(SortedArray sorted, int key) {
+		int[] sortedNumbers = sorted.getNumbers();
+		return lowerBound(sortedNumbers, 0, sortedNumbers.length, key);
+	}
+
+	public long getSearches();
+
+	// Array elements read by all searches so far
+	public long getProbes();
+
+}
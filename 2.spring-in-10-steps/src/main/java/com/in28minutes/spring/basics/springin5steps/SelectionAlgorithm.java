@@ -0,0 +1,82 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import org.springframework.stereotype.Component;
+
+// Order statistics without a full sort. select is an introselect: quick
+// select on the quick sort's median-of-three partition, finished with
+// insertion sort on small ranges and with heap sort if the partitions keep
+// coming out lopsided. Expected O(n), worst case O(n log n).
+//
+// select, topK and bottomK reorder the array they are given. Use
+// topKCollector for input that does not fit in one array.
+@Component
+public class SelectionAlgorithm {
+
+	static final int INSERTION_SORT_THRESHOLD = 16;
+
+	// Returns the k-th smallest value (k = 0 is the minimum). Afterwards
+	// numbers[k] holds it, with nothing larger before it and nothing smaller
+	// after it.
+	public int select(int[] numbers, int k) {
+		if (k < 0 || k >= numbers.length) {
+			throw new IllegalArgumentException("k = " + k + " for "
+					+ numbers.length + " numbers");
+		}
+		int from = 0;
+		int to = numbers.length;
+		int depthLimit = Sorting.depthLimit(numbers.length);
+		while (to - from > INSERTION_SORT_THRESHOLD) {
+			if (depthLimit-- == 0) {
+				Sorting.heapSort(numbers, from, to);
+				return numbers[k];
+			}
+			int split = QuickSortAlgorithm.partition(numbers, from, to);
+			if (k < split) {
+				to = split;
+			} else {
+				from = split;
+			}
+		}
+		Sorting.insertionSort(numbers, from, to);
+		return numbers[k];
+	}
+
+	// The k largest values, largest first
+	public int[] topK(int[] numbers, int k) {
+		int[] top = bottomOrTop(numbers, k, numbers.length - k);
+		reverse(top);
+		return top;
+	}
+
+	// The k smallest values, smallest first
+	public int[] bottomK(int[] numbers, int k) {
+		return bottomOrTop(numbers, k, 0);
+	}
+
+	public TopKCollector topKCollector(int k) {
+		return new TopKCollector(k);
+	}
+
+	private int[] bottomOrTop(int[] numbers, int k, int from) {
+		if (k < 0 || k > numbers.length) {
+			throw new IllegalArgumentException("k = " + k + " for "
+					+ numbers.length + " numbers");
+		}
+		int[] result = new int[k];
+		if (k == 0) {
+			return result;
+		}
+		// Partitions around the boundary value, so the k wanted values end up
+		// in [from, from + k)
+		select(numbers, from == 0 ? k - 1 : from);
+		System.arraycopy(numbers, from, result, 0, k);
+		Sorting.sort(result);
+		return result;
+	}
+
+	private static void reverse(int[] numbers) {
+		for (int i = 0, j = numbers.length - 1; i < j; i++, j--) {
+			Sorting.swap(numbers, i, j);
+		}
+	}
+}
@@ -1,5 +1,27 @@
 package com.in28minutes.spring.basics.springin5steps;
 
+// Implementations sort in place and do not allocate per call: sort returns
+// the array it was given, and no scratch space is created on the hot path
+// (fork/join tasks of the parallel quick sort are the only exception).
 public interface SortAlgorithm {
-	public int[] sort(int[] numbers);
+
+	// Sorts numbers in place and returns the same array
+	public default int[] sort(int[] numbers) {
+		sortInPlace(numbers, 0, numbers.length);
+		return numbers;
+	}
+
+	// Sorts numbers[from, to) in place and leaves the rest untouched
+	public void sortInPlace(int[] numbers, int from, int to);
+
+	// Writes the sorted contents of source to the start of destination and
+	// leaves source untouched
+	public default void sortInto(int[] source, int[] destination) {
+		if (destination.length < source.length) {
+			throw new IllegalArgumentException("Destination holds "
+					+ destination.length + " ints, source has " + source.length);
+		}
+		System.arraycopy(source, 0, destination, 0, source.length);
+		sortInPlace(destination, 0, source.length);
+	}
 }
@@ -0,0 +1,130 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import org.springframework.beans.factory.config.BeanDefinitionCustomizer;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.env.Environment;
+
+// Registers the SortAlgorithm beans, ExternalMergeSort, SelectionAlgorithm,
+// BinarySearchImpl and what they depend on with plain suppliers: no
+// classpath scanning, no annotation processing and no reflective
+// constructor lookup. Bean names and properties are the
+// ones of the scanned @Component classes and the defaults are their
+// DEFAULT_ constants, so both contexts answer the same getBean calls.
+// @PreDestroy is not processed here, so the beans that own threads get their
+// destroy method set explicitly.
+public class SortBeansInitializer implements
+		ApplicationContextInitializer<GenericApplicationContext> {
+
+	private static final BeanDefinitionCustomizer SHUTDOWN = definition -> ((AbstractBeanDefinition) definition)
+			.setDestroyMethodName("shutdown");
+
+	@Override
+	public void initialize(GenericApplicationContext context) {
+		Environment env = context.getEnvironment();
+
+		context.registerBean("callMetrics", CallMetrics.class, CallMetrics::new);
+		if (env.getProperty("instrumentation.enabled", Boolean.class,
+				InstrumentationBeanPostProcessor.DEFAULT_ENABLED)) {
+			context.registerBean("instrumentationBeanPostProcessor",
+					InstrumentationBeanPostProcessor.class,
+					() -> new InstrumentationBeanPostProcessor(context
+							.getBean(CallMetrics.class), true));
+		}
+
+		context.registerBean("sortThresholds", SortThresholds.class,
+				() -> SortCalibration.thresholds(
+						env.getProperty("sort.quick.insertion-sort-threshold", Integer.class,
+								SortThresholds.DEFAULT_INSERTION_SORT_THRESHOLD),
+						env.getProperty("sort.quick.parallel-threshold", Integer.class,
+								SortThresholds.DEFAULT_PARALLEL_THRESHOLD),
+						env.getProperty("sort.quick.parallelism", Integer.class,
+								QuickSortAlgorithm.DEFAULT_PARALLELISM),
+						env.getProperty("sort.calibration.enabled", Boolean.class,
+								SortCalibration.DEFAULT_ENABLED),
+						env.resolvePlaceholders("${sort.calibration.file:"
+								+ SortCalibration.DEFAULT_FILE + "}")));
+		context.registerBean("scratchBufferPool", ScratchBufferPool.class,
+				() -> new ScratchBufferPool(env.getProperty(
+						"sort.scratch.idle-millis", Long.class,
+						ScratchBufferPool.DEFAULT_IDLE_MILLIS)),
+				SHUTDOWN);
+
+		context.registerBean("bubbleSortAlgorithm", BubbleSortAlgorithm.class,
+				BubbleSortAlgorithm::new,
+				definition -> definition.setPrimary(true));
+		context.registerBean("quickSortAlgorithm", QuickSortAlgorithm.class,
+				() -> new QuickSortAlgorithm(
+						env.getProperty("sort.quick.parallelism", Integer.class,
+								QuickSortAlgorithm.DEFAULT_PARALLELISM),
+						context.getBean(SortThresholds.class),
+						env.getProperty("sort.quick.partitioning",
+								QuickSortAlgorithm.Partitioning.class,
+								QuickSortAlgorithm.Partitioning.valueOf(
+										QuickSortAlgorithm.DEFAULT_PARTITIONING))),
+				SHUTDOWN);
+		context.registerBean("radixSortAlgorithm", RadixSortAlgorithm.class,
+				RadixSortAlgorithm::new);
+		context.registerBean("mergeSortAlgorithm", MergeSortAlgorithm.class,
+				() -> new MergeSortAlgorithm(
+						context.getBean(ScratchBufferPool.class),
+						env.getProperty("sort.merge.parallelism", Integer.class,
+								MergeSortAlgorithm.DEFAULT_PARALLELISM),
+						env.getProperty("sort.merge.parallel-threshold", Integer.class,
+								MergeSortAlgorithm.DEFAULT_PARALLEL_THRESHOLD)),
+				SHUTDOWN);
+		context.registerBean("adaptiveSortAlgorithm", AdaptiveSortAlgorithm.class,
+				() -> new AdaptiveSortAlgorithm(
+						context.getBean(QuickSortAlgorithm.class),
+						context.getBean(RadixSortAlgorithm.class),
+						env.getProperty("sort.adaptive.insertion-sort-threshold", Integer.class,
+								AdaptiveSortAlgorithm.DEFAULT_INSERTION_SORT_THRESHOLD),
+						env.getProperty("sort.adaptive.radix-threshold", Integer.class,
+								AdaptiveSortAlgorithm.DEFAULT_RADIX_THRESHOLD),
+						env.getProperty("sort.adaptive.narrow-range-radix-threshold", Integer.class,
+								AdaptiveSortAlgorithm.DEFAULT_NARROW_RANGE_RADIX_THRESHOLD),
+						env.getProperty("sort.adaptive.parallel-threshold", Integer.class,
+								AdaptiveSortAlgorithm.DEFAULT_PARALLEL_THRESHOLD),
+						env.getProperty("sort.adaptive.override",
+								AdaptiveSortAlgorithm.Strategy.class)));
+
+		context.registerBean("externalMergeSort", ExternalMergeSort.class,
+				() -> new ExternalMergeSort(
+						context.getBean("adaptiveSortAlgorithm", SortAlgorithm.class),
+						env.getProperty("sort.external.run-size", Integer.class,
+								ExternalMergeSort.DEFAULT_RUN_SIZE),
+						env.resolvePlaceholders("${sort.external.temp-dir:"
+								+ ExternalMergeSort.DEFAULT_TEMP_DIR + "}")));
+		context.registerBean("selectionAlgorithm", SelectionAlgorithm.class,
+				SelectionAlgorithm::new);
+
+		context.registerBean("sortedArrayCache", SortedArrayCache.class,
+				() -> new SortedArrayCache(
+						env.getProperty("binary-search.cache.key-mode",
+								SortedArrayCache.KeyMode.class,
+								SortedArrayCache.KeyMode.valueOf(
+										SortedArrayCache.DEFAULT_KEY_MODE)),
+						env.getProperty("binary-search.cache.max-entries", Integer.class,
+								SortedArrayCache.DEFAULT_MAX_ENTRIES),
+						env.getProperty("binary-search.cache.max-elements", Long.class,
+								SortedArrayCache.DEFAULT_MAX_ELEMENTS)));
+		context.registerBean("binarySearchStrategy", BinarySearchStrategy.class,
+				BinarySearchStrategy::new);
+		context.registerBean("exponentialSearchStrategy",
+				ExponentialSearchStrategy.class, ExponentialSearchStrategy::new);
+		context.registerBean("interpolationSearchStrategy",
+				InterpolationSearchStrategy.class,
+				InterpolationSearchStrategy::new);
+		context.registerBean("autoSearchStrategy", AutoSearchStrategy.class,
+				() -> new AutoSearchStrategy(
+						context.getBean(BinarySearchStrategy.class),
+						context.getBean(ExponentialSearchStrategy.class),
+						context.getBean(InterpolationSearchStrategy.class)));
+		context.registerBean("binarySearchImpl", BinarySearchImpl.class,
+				() -> new BinarySearchImpl(
+						context.getBean("adaptiveSortAlgorithm", SortAlgorithm.class),
+						context.getBean(SortedArrayCache.class),
+						context.getBean("autoSearchStrategy", SearchStrategy.class)));
+	}
+}
@@ -0,0 +1,140 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Picks QuickSortAlgorithm's thresholds for this host with short timed
+// trials on random ints: the insertion sort cutoff on a sequential sort, then
+// the parallel split threshold with that cutoff. Candidates take turns round
+// by round so a slow phase of the machine hits all of them, the first round
+// only warms up the JIT, and each candidate is scored by its best round.
+//
+// Only the quick sort is calibrated. MergeSortAlgorithm's parallel threshold
+// and AdaptiveSortAlgorithm's cut-offs keep their configured values
+// (sort.merge.* and sort.adaptive.*).
+final class SortCalibration {
+
+	private static final Logger log = LoggerFactory
+			.getLogger(SortCalibration.class);
+
+	static final boolean DEFAULT_ENABLED = false;
+	// A placeholder, resolved against the environment like the property
+	static final String DEFAULT_FILE = "${user.home}/.spring-in-5-steps/sort-thresholds.properties";
+
+	static final int[] INSERTION_SORT_CANDIDATES = { 8, 16, 24, 32, 48, 64 };
+	static final int[] PARALLEL_CANDIDATES = { 4096, 8192, 16384, 32768,
+			65536, 131072 };
+
+	private final ForkJoinPool pool;
+	private final int sequentialSize;
+	private final int parallelSize;
+	private final int rounds;
+
+	SortCalibration(ForkJoinPool pool, int sequentialSize, int parallelSize,
+			int rounds) {
+		this.pool = pool;
+		this.sequentialSize = sequentialSize;
+		this.parallelSize = parallelSize;
+		this.rounds = rounds;
+	}
+
+	// About a second on a current desktop
+	SortCalibration(ForkJoinPool pool) {
+		this(pool, 1 << 16, 1 << 20, 6);
+	}
+
+	// The configured thresholds, or when calibrate is set the ones stored in
+	// file or measured on a pool of the quick sort's parallelism
+	static SortThresholds thresholds(int insertionSortThreshold,
+			int parallelThreshold, int parallelism, boolean calibrate,
+			String file) {
+		SortThresholds configured = new SortThresholds(insertionSortThreshold,
+				parallelThreshold, false);
+		if (!calibrate) {
+			return configured;
+		}
+		ForkJoinPool pool = parallelism > 0 ? new ForkJoinPool(parallelism)
+				: ForkJoinPool.commonPool();
+		try {
+			return new SortCalibration(pool).loadOrCalibrate(Paths.get(file),
+					configured);
+		} finally {
+			if (parallelism > 0) {
+				pool.shutdown();
+			}
+		}
+	}
+
+	// Reuses the thresholds stored in file for this host, or measures and
+	// stores them
+	SortThresholds loadOrCalibrate(Path file, SortThresholds configured) {
+		try {
+			SortThresholds stored = SortThresholds.load(file);
+			if (stored != null) {
+				return stored;
+			}
+		} catch (IOException e) {
+			log.warn("Could not read {}, calibrating again", file, e);
+		}
+		SortThresholds calibrated = calibrate(configured);
+		log.info("Calibrated {}", calibrated);
+		try {
+			calibrated.store(file);
+		} catch (IOException e) {
+			log.warn("Could not store {}", file, e);
+		}
+		return calibrated;
+	}
+
+	SortThresholds calibrate(SortThresholds configured) {
+		int insertionSortThreshold = fastest(INSERTION_SORT_CANDIDATES,
+				sequentialSize, candidate -> new QuickSortAlgorithm(pool,
+						candidate, Integer.MAX_VALUE));
+		// Splitting cannot pay off without a second worker
+		int parallelThreshold = pool.getParallelism() < 2 ? configured
+				.getParallelThreshold() : fastest(PARALLEL_CANDIDATES,
+				parallelSize, candidate -> new QuickSortAlgorithm(pool,
+						insertionSortThreshold, candidate));
+		return new SortThresholds(insertionSortThreshold, parallelThreshold,
+				true);
+	}
+
+	private int fastest(int[] candidates, int size,
+			IntFunction<SortAlgorithm> algorithm) {
+		Random random = new Random(size);
+		int[] source = new int[size];
+		for (int i = 0; i < size; i++) {
+			source[i] = random.nextInt();
+		}
+		int[] numbers = new int[size];
+		long[] best = new long[candidates.length];
+		Arrays.fill(best, Long.MAX_VALUE);
+		for (int round = 0; round < rounds; round++) {
+			for (int i = 0; i < candidates.length; i++) {
+				SortAlgorithm sortAlgorithm = algorithm.apply(candidates[i]);
+				System.arraycopy(source, 0, numbers, 0, size);
+				long start = System.nanoTime();
+				sortAlgorithm.sortInPlace(numbers, 0, size);
+				long elapsed = System.nanoTime() - start;
+				if (round > 0 && elapsed < best[i]) {
+					best[i] = elapsed;
+				}
+			}
+		}
+		int fastest = 0;
+		for (int i = 1; i < candidates.length; i++) {
+			if (best[i] < best[fastest]) {
+				fastest = i;
+			}
+		}
+		return candidates[fastest];
+	}
+}
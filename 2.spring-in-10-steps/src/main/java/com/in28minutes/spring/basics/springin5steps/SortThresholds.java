@@ -0,0 +1,105 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+// Insertion sort cutoff and parallel split threshold of QuickSortAlgorithm,
+// either configured or measured by SortCalibration. Stored as a properties
+// file together with the host they were measured on; load ignores a file
+// written on a different host.
+public final class SortThresholds {
+
+	static final int DEFAULT_INSERTION_SORT_THRESHOLD = 32;
+	static final int DEFAULT_PARALLEL_THRESHOLD = 16384;
+
+	private static final String INSERTION_SORT_THRESHOLD = "insertion-sort-threshold";
+	private static final String PARALLEL_THRESHOLD = "parallel-threshold";
+	private static final String HOST = "host";
+
+	private final int insertionSortThreshold;
+	private final int parallelThreshold;
+	private final boolean calibrated;
+
+	public SortThresholds(int insertionSortThreshold, int parallelThreshold,
+			boolean calibrated) {
+		this.insertionSortThreshold = insertionSortThreshold;
+		this.parallelThreshold = parallelThreshold;
+		this.calibrated = calibrated;
+	}
+
+	public int getInsertionSortThreshold() {
+		return insertionSortThreshold;
+	}
+
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	public boolean isCalibrated() {
+		return calibrated;
+	}
+
+	// Null when there is no file or it was written on another host
+	public static SortThresholds load(Path file) throws IOException {
+		Properties properties = new Properties();
+		try (InputStream in = Files.newInputStream(file)) {
+			properties.load(in);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+		if (!host().equals(properties.getProperty(HOST))) {
+			return null;
+		}
+		try {
+			return new SortThresholds(Integer.parseInt(properties
+					.getProperty(INSERTION_SORT_THRESHOLD)),
+					Integer.parseInt(properties.getProperty(PARALLEL_THRESHOLD)),
+					true);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	// Writes a temp file next to the target and moves it over, so a
+	// concurrent start never reads half a file
+	public void store(Path file) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty(INSERTION_SORT_THRESHOLD,
+				Integer.toString(insertionSortThreshold));
+		properties.setProperty(PARALLEL_THRESHOLD,
+				Integer.toString(parallelThreshold));
+		properties.setProperty(HOST, host());
+		Path directory = file.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		Path temp = Files.createTempFile(directory, "sort-thresholds", ".tmp");
+		try {
+			try (OutputStream out = Files.newOutputStream(temp)) {
+				properties.store(out, "Measured by SortCalibration");
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	// What the measurements depend on
+	static String host() {
+		return System.getProperty("os.arch") + "/"
+				+ Runtime.getRuntime().availableProcessors() + " cpus/java "
+				+ System.getProperty("java.specification.version");
+	}
+
+	@Override
+	public String toString() {
+		return "SortThresholds [insertionSortThreshold="
+				+ insertionSortThreshold + ", parallelThreshold="
+				+ parallelThreshold + ", calibrated=" + calibrated + "]";
+	}
+}
@@ -0,0 +1,34 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+// A sorted array as SortedArrayCache hands it out, together with what
+// AutoSearchStrategy learns by sampling it. Cached arrays are reused by many
+// searches, so the sampling runs once per array instead of once per search.
+public final class SortedArray {
+
+	private final int[] numbers;
+	// 0 until sampled, then 1 when nearly uniform and -1 when not; two
+	// threads sampling at once store the same answer
+	private volatile int uniformity;
+
+	SortedArray(int[] numbers) {
+		this.numbers = numbers;
+	}
+
+	public int[] getNumbers() {
+		return numbers;
+	}
+
+	boolean isNearlyUniform() {
+		int uniformity = this.uniformity;
+		if (uniformity == 0) {
+			uniformity = AutoSearchStrategy.isNearlyUniform(numbers, 0,
+					numbers.length) ? 1 : -1;
+			this.uniformity = uniformity;
+		}
+		return uniformity > 0;
+	}
+
+	boolean isSampled() {
+		return uniformity != 0;
+	}
+}
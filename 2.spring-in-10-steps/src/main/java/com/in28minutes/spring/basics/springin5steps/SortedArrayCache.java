@@ -0,0 +1,260 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// LRU cache of sorted copies, bounded both by entry count and by the total
+// number of cached ints.
+//
+// Arrays marked immutable are keyed by identity, through weak references
+// that are queued once the array is collected; the entries of collected
+// arrays are dropped on the next lookup. Other arrays can change
+// between calls, so they are only cached in CONTENT mode, keyed by a copy of
+// their contents: a 64 bit fingerprint picks the bucket and a hit is only
+// taken when the contents are equal, so a fingerprint collision costs a miss
+// rather than another array's answer. The copy counts towards the element
+// bound. Cached copies are never modified after they are stored and are safe
+// to share between threads.
+@Component
+public class SortedArrayCache {
+
+	public enum KeyMode {
+		IDENTITY, CONTENT
+	}
+
+	static final String DEFAULT_KEY_MODE = "IDENTITY";
+	static final int DEFAULT_MAX_ENTRIES = 256;
+	static final long DEFAULT_MAX_ELEMENTS = 16777216;
+
+	private final KeyMode keyMode;
+	private final int maxEntries;
+	private final long maxElements;
+
+	private final LinkedHashMap<Object, SortedArray> entries = new LinkedHashMap<>(
+			16, 0.75f, true);
+	private long cachedElements;
+	private final ReferenceQueue<int[]> collected = new ReferenceQueue<>();
+
+	// int[] uses identity equals/hashCode, so this is a weak identity set
+	private final Map<int[], Boolean> immutableArrays = Collections
+			.synchronizedMap(new WeakHashMap<>());
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public SortedArrayCache(
+			@Value("${binary-search.cache.key-mode:" + DEFAULT_KEY_MODE + "}") KeyMode keyMode,
+			@Value("${binary-search.cache.max-entries:" + DEFAULT_MAX_ENTRIES + "}") int maxEntries,
+			@Value("${binary-search.cache.max-elements:" + DEFAULT_MAX_ELEMENTS + "}") long maxElements) {
+		this.keyMode = keyMode;
+		this.maxEntries = maxEntries;
+		this.maxElements = maxElements;
+	}
+
+	// The caller promises not to modify the array from now on
+	public void markImmutable(int[] numbers) {
+		immutableArrays.put(numbers, Boolean.TRUE);
+	}
+
+	public boolean isImmutable(int[] numbers) {
+		return immutableArrays.containsKey(numbers);
+	}
+
+	public int[] sorted(int[] numbers, UnaryOperator<int[]> sorter) {
+		return sortedArray(numbers, sorter).getNumbers();
+	}
+
+	// The cached entry itself, so what is learned about it is kept too
+	public SortedArray sortedArray(int[] numbers, UnaryOperator<int[]> sorter) {
+		expungeCollected();
+		Object key = keyFor(numbers);
+		if (key != null) {
+			synchronized (this) {
+				SortedArray sorted = entries.get(key);
+				if (sorted != null) {
+					hits.increment();
+					return sorted;
+				}
+			}
+		}
+		misses.increment();
+		// Sort outside the lock; two threads missing on the same array both
+		// sort it and the later put wins
+		SortedArray sorted = new SortedArray(sorter.apply(numbers.clone()));
+		if (key instanceof ContentKey) {
+			key = ((ContentKey) key).detached();
+		}
+		if (key != null
+				&& sorted.getNumbers().length + weight(key) <= maxElements) {
+			put(key, sorted);
+		}
+		return sorted;
+	}
+
+	private Object keyFor(int[] numbers) {
+		if (isImmutable(numbers)) {
+			return new IdentityKey(numbers, collected);
+		}
+		if (keyMode == KeyMode.CONTENT) {
+			return new ContentKey(numbers, fingerprint(numbers));
+		}
+		return null;
+	}
+
+	private synchronized void put(Object key, SortedArray sorted) {
+		expungeCollected();
+		// Remove first so the stored key is the new copy; an equal key keeps
+		// the old key object on a plain put
+		SortedArray previous = entries.remove(key);
+		if (previous != null) {
+			cachedElements -= previous.getNumbers().length + weight(key);
+		}
+		entries.put(key, sorted);
+		cachedElements += sorted.getNumbers().length + weight(key);
+		Iterator<Map.Entry<Object, SortedArray>> eldest = entries.entrySet()
+				.iterator();
+		while (entries.size() > maxEntries || cachedElements > maxElements) {
+			Map.Entry<Object, SortedArray> entry = eldest.next();
+			cachedElements -= entry.getValue().getNumbers().length
+					+ weight(entry.getKey());
+			eldest.remove();
+			evictions.increment();
+		}
+	}
+
+	// Lookup keys are registered too, but a reference that is itself
+	// unreachable is never queued, so only stored keys come back here; equals
+	// starts with identity, so the cleared key still finds its entry
+	private void expungeCollected() {
+		Reference<? extends int[]> key;
+		while ((key = collected.poll()) != null) {
+			synchronized (this) {
+				SortedArray removed = entries.remove(key);
+				if (removed != null) {
+					cachedElements -= removed.getNumbers().length;
+				}
+			}
+		}
+	}
+
+	// Ints held by the key itself
+	private static int weight(Object key) {
+		return key instanceof ContentKey ? ((ContentKey) key).contents.length
+				: 0;
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		cachedElements = 0;
+	}
+
+	static long fingerprint(int[] numbers) {
+		long hash = 0x9E3779B97F4A7C15L ^ numbers.length;
+		for (int number : numbers) {
+			hash = (hash ^ number) * 0xBF58476D1CE4E5B9L;
+			hash ^= hash >>> 31;
+		}
+		return hash;
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	public synchronized long getCachedElements() {
+		return cachedElements;
+	}
+
+	public KeyMode getKeyMode() {
+		return keyMode;
+	}
+
+	@Override
+	public String toString() {
+		return "SortedArrayCache [keyMode=" + keyMode + ", size=" + getSize()
+				+ ", hits=" + getHitCount() + ", misses=" + getMissCount()
+				+ ", evictions=" + getEvictionCount() + "]";
+	}
+
+	private static final class IdentityKey extends WeakReference<int[]> {
+
+		private final int hash;
+
+		IdentityKey(int[] numbers, ReferenceQueue<int[]> queue) {
+			super(numbers, queue);
+			this.hash = System.identityHashCode(numbers);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof IdentityKey))
+				return false;
+			int[] numbers = get();
+			return numbers != null && numbers == ((IdentityKey) obj).get();
+		}
+	}
+
+	// Lookups wrap the caller's array; stored keys hold a private copy
+	private static final class ContentKey {
+
+		private final int[] contents;
+		private final long fingerprint;
+
+		ContentKey(int[] contents, long fingerprint) {
+			this.contents = contents;
+			this.fingerprint = fingerprint;
+		}
+
+		ContentKey detached() {
+			return new ContentKey(contents.clone(), fingerprint);
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (fingerprint ^ (fingerprint >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof ContentKey))
+				return false;
+			ContentKey other = (ContentKey) obj;
+			return fingerprint == other.fingerprint
+					&& Arrays.equals(contents, other.contents);
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+// Small sequential building blocks shared by the SortAlgorithm implementations.
+// All ranges are [from, to).
+final class Sorting {
+
+	private Sorting() {
+	}
+
+	static void insertionSort(int[] a, int from, int to) {
+		for (int i = from + 1; i < to; i++) {
+			int value = a[i];
+			int j = i - 1;
+			while (j >= from && a[j] > value) {
+				a[j + 1] = a[j];
+				j--;
+			}
+			a[j + 1] = value;
+		}
+	}
+
+	static void insertionSort(long[] a, int from, int to) {
+		for (int i = from + 1; i < to; i++) {
+			long value = a[i];
+			int j = i - 1;
+			while (j >= from && a[j] > value) {
+				a[j + 1] = a[j];
+				j--;
+			}
+			a[j + 1] = value;
+		}
+	}
+
+	static void heapSort(int[] a, int from, int to) {
+		int n = to - from;
+		for (int i = (n >>> 1) - 1; i >= 0; i--) {
+			siftDown(a, from, i, n);
+		}
+		for (int end = n - 1; end > 0; end--) {
+			swap(a, from, from + end);
+			siftDown(a, from, 0, end);
+		}
+	}
+
+	private static void siftDown(int[] a, int base, int i, int n) {
+		int value = a[base + i];
+		int child;
+		while ((child = 2 * i + 1) < n) {
+			if (child + 1 < n && a[base + child + 1] > a[base + child]) {
+				child++;
+			}
+			if (a[base + child] <= value) {
+				break;
+			}
+			a[base + i] = a[base + child];
+			i = child;
+		}
+		a[base + i] = value;
+	}
+
+	// Sorts small result arrays without going through a SortAlgorithm bean
+	static void sort(int[] a) {
+		if (a.length <= 32) {
+			insertionSort(a, 0, a.length);
+		} else {
+			heapSort(a, 0, a.length);
+		}
+	}
+
+	static void swap(int[] a, int i, int j) {
+		int tmp = a[i];
+		a[i] = a[j];
+		a[j] = tmp;
+	}
+
+	// Introsort recursion budget: 2 * floor(log2(n)) levels before heap sort
+	// takes over.
+	static int depthLimit(int n) {
+		return 2 * (31 - Integer.numberOfLeadingZeros(Math.max(n, 1)));
+	}
+}
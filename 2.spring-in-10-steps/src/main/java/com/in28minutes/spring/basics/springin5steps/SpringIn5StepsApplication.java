@@ -1,8 +1,10 @@
 package com.in28minutes.spring.basics.springin5steps;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
 public class SpringIn5StepsApplication {
@@ -11,6 +13,20 @@ public class SpringIn5StepsApplication {
 	// What are the dependencies of a bean?
 	// Where to search for beans? => No need
 
+	// The quick sort thresholds as configured, or with
+	// sort.calibration.enabled=true as measured on this host and stored in
+	// sort.calibration.file for later starts
+	@Bean
+	public SortThresholds sortThresholds(
+			@Value("${sort.quick.insertion-sort-threshold:" + SortThresholds.DEFAULT_INSERTION_SORT_THRESHOLD + "}") int insertionSortThreshold,
+			@Value("${sort.quick.parallel-threshold:" + SortThresholds.DEFAULT_PARALLEL_THRESHOLD + "}") int parallelThreshold,
+			@Value("${sort.quick.parallelism:" + QuickSortAlgorithm.DEFAULT_PARALLELISM + "}") int parallelism,
+			@Value("${sort.calibration.enabled:" + SortCalibration.DEFAULT_ENABLED + "}") boolean calibrate,
+			@Value("${sort.calibration.file:" + SortCalibration.DEFAULT_FILE + "}") String file) {
+		return SortCalibration.thresholds(insertionSortThreshold,
+				parallelThreshold, parallelism, calibrate, file);
+	}
+
 	public static void main(String[] args) {
 
 		// BinarySearchImpl binarySearch =
@@ -23,5 +39,11 @@ public class SpringIn5StepsApplication {
 		int result = 
 				binarySearch.binarySearch(new int[] { 12, 4, 6 }, 3);
 		System.out.println(result);
+		// Empty unless the sort and search beans are instrumented
+		if (applicationContext.getEnvironment().getProperty(
+				"instrumentation.enabled", Boolean.class,
+				InstrumentationBeanPostProcessor.DEFAULT_ENABLED)) {
+			System.out.println(applicationContext.getBean(CallMetrics.class));
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.ResourcePropertySource;
+
+// Same beans as SpringIn5StepsApplication for short-lived batch jobs, but
+// started without Spring Boot: a GenericApplicationContext filled by
+// SortBeansInitializer. Properties come from --name=value arguments, system
+// properties, environment variables and application.properties, in that
+// order. Boot features such as its logging setup and JMX export are not
+// there.
+public class SpringIn5StepsFunctionalApplication {
+
+	public static ConfigurableApplicationContext run(String... args) {
+		GenericApplicationContext context = new GenericApplicationContext();
+		MutablePropertySources propertySources = context.getEnvironment()
+				.getPropertySources();
+		propertySources.addFirst(new SimpleCommandLinePropertySource(args));
+		ClassPathResource properties = new ClassPathResource(
+				"application.properties");
+		if (properties.exists()) {
+			try {
+				propertySources.addLast(new ResourcePropertySource(properties));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		new SortBeansInitializer().initialize(context);
+		context.refresh();
+		context.registerShutdownHook();
+		return context;
+	}
+
+	public static void main(String[] args) {
+		ConfigurableApplicationContext applicationContext = run(args);
+		BinarySearchImpl binarySearch = applicationContext
+				.getBean(BinarySearchImpl.class);
+		int result = binarySearch.binarySearch(new int[] { 12, 4, 6 }, 3);
+		System.out.println(result);
+		// Empty unless the sort and search beans are instrumented
+		if (applicationContext.getEnvironment().getProperty(
+				"instrumentation.enabled", Boolean.class,
+				InstrumentationBeanPostProcessor.DEFAULT_ENABLED)) {
+			System.out.println(applicationContext.getBean(CallMetrics.class));
+		}
+	}
+}
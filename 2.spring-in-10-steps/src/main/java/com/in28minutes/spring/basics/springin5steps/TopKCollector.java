@@ -0,0 +1,87 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+// Keeps the k largest values of an unbounded stream in a min-heap of k ints,
+// so each offer costs O(log k) at most and memory never grows past k. Not
+// thread safe; use one collector per producer and merge them.
+public final class TopKCollector {
+
+	private final int[] heap;
+	private int size;
+	private long offered;
+
+	public TopKCollector(int k) {
+		if (k < 0) {
+			throw new IllegalArgumentException("k = " + k);
+		}
+		this.heap = new int[k];
+	}
+
+	public void offer(int value) {
+		offered++;
+		if (size < heap.length) {
+			heap[size] = value;
+			siftUp(size++);
+		} else if (size > 0 && value > heap[0]) {
+			heap[0] = value;
+			siftDown(0);
+		}
+	}
+
+	public void offer(int[] values, int from, int to) {
+		for (int i = from; i < to; i++) {
+			offer(values[i]);
+		}
+	}
+
+	public void merge(TopKCollector other) {
+		offer(other.heap, 0, other.size);
+	}
+
+	// The k largest values seen so far, largest first
+	public int[] result() {
+		int[] result = new int[size];
+		System.arraycopy(heap, 0, result, 0, size);
+		Sorting.sort(result);
+		for (int i = 0, j = size - 1; i < j; i++, j--) {
+			Sorting.swap(result, i, j);
+		}
+		return result;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long getOfferedCount() {
+		return offered;
+	}
+
+	private void siftUp(int i) {
+		int value = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (heap[parent] <= value) {
+				break;
+			}
+			heap[i] = heap[parent];
+			i = parent;
+		}
+		heap[i] = value;
+	}
+
+	private void siftDown(int i) {
+		int value = heap[i];
+		int child;
+		while ((child = 2 * i + 1) < size) {
+			if (child + 1 < size && heap[child + 1] < heap[child]) {
+				child++;
+			}
+			if (heap[child] >= value) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = value;
+	}
+}
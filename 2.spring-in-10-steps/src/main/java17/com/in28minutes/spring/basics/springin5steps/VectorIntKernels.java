@@ -0,0 +1,80 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// IntKernels on the incubating Vector API, one preferred-width vector
+// (8 ints with AVX2, 16 with AVX-512) per step. Loaded reflectively by
+// IntKernels so the rest of the module still targets Java 8.
+final class VectorIntKernels extends IntKernels {
+
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+	private static final int LANES = SPECIES.length();
+
+	VectorIntKernels() {
+		// Without SIMD registers the API falls back to slow Java code
+		if (LANES < 4) {
+			throw new IllegalStateException("No SIMD support for ints");
+		}
+	}
+
+	@Override
+	public String getName() {
+		return "vector-" + LANES;
+	}
+
+	@Override
+	int linearScanThreshold() {
+		return 4 * LANES;
+	}
+
+	@Override
+	int countLessThan(int[] a, int from, int to, int key) {
+		IntVector keys = IntVector.broadcast(SPECIES, key);
+		int count = 0;
+		int i = from;
+		for (int bound = to - LANES; i <= bound; i += LANES) {
+			count += IntVector.fromArray(SPECIES, a, i)
+					.compare(VectorOperators.LT, keys).trueCount();
+		}
+		return count + super.countLessThan(a, i, to, key);
+	}
+
+	@Override
+	int nextNotLess(int[] a, int from, int to, int pivot) {
+		// Most runs between two swaps are short, so look at one element
+		// before paying for a vector load
+		if (from >= to || a[from] >= pivot) {
+			return from;
+		}
+		IntVector pivots = IntVector.broadcast(SPECIES, pivot);
+		int i = from + 1;
+		for (int bound = to - LANES; i <= bound; i += LANES) {
+			VectorMask<Integer> notLess = IntVector.fromArray(SPECIES, a, i)
+					.compare(VectorOperators.GE, pivots);
+			if (notLess.anyTrue()) {
+				return i + notLess.firstTrue();
+			}
+		}
+		return super.nextNotLess(a, i, to, pivot);
+	}
+
+	@Override
+	int previousNotGreater(int[] a, int from, int to, int pivot) {
+		if (from >= to || a[to - 1] <= pivot) {
+			return to - 1;
+		}
+		IntVector pivots = IntVector.broadcast(SPECIES, pivot);
+		int end = to - 1;
+		for (; end - LANES >= from; end -= LANES) {
+			VectorMask<Integer> notGreater = IntVector.fromArray(SPECIES, a,
+					end - LANES).compare(VectorOperators.LE, pivots);
+			if (notGreater.anyTrue()) {
+				return end - LANES + notGreater.lastTrue();
+			}
+		}
+		return super.previousNotGreater(a, from, end, pivot);
+	}
+}
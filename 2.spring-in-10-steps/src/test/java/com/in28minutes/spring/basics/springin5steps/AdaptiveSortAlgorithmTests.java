@@ -0,0 +1,86 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.in28minutes.spring.basics.springin5steps.AdaptiveSortAlgorithm.Strategy;
+
+public class AdaptiveSortAlgorithmTests {
+
+	private final ForkJoinPool pool = new ForkJoinPool(2);
+	private final AdaptiveSortAlgorithm adaptiveSort = new AdaptiveSortAlgorithm(
+			new QuickSortAlgorithm(pool, 16, 1024),
+			new RadixSortAlgorithm(), 16, 20000, 512, 60000, null);
+
+	@Test
+	public void choosesStrategyFromSizeOrderAndRange() {
+		assertEquals(Strategy.INSERTION, adaptiveSort.choose(random(10, 1000)));
+		assertEquals(Strategy.PRESORTED, adaptiveSort.choose(new int[] { 1, 2,
+				2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18 }));
+		assertEquals(Strategy.QUICK, adaptiveSort.choose(random(1000,
+				Integer.MAX_VALUE)));
+		assertEquals(Strategy.RADIX, adaptiveSort.choose(random(1000, 1000)));
+		assertEquals(Strategy.RADIX, adaptiveSort.choose(random(30000,
+				Integer.MAX_VALUE)));
+		assertEquals(Strategy.PARALLEL, adaptiveSort.choose(random(100000,
+				Integer.MAX_VALUE)));
+	}
+
+	@Test
+	public void countsDecisionsAndHonorsOverride() {
+		adaptiveSort.sort(random(10, 1000));
+		adaptiveSort.sort(random(10, 1000));
+		assertEquals(2, adaptiveSort.getDecisionCount(Strategy.INSERTION));
+
+		adaptiveSort.setOverride(Strategy.RADIX);
+		adaptiveSort.sort(random(10, 1000));
+		assertEquals(1, adaptiveSort.getDecisionCount(Strategy.RADIX));
+
+		adaptiveSort.setOverride(null);
+		int[] descending = new int[100];
+		for (int i = 0; i < descending.length; i++) {
+			descending[i] = descending.length - i;
+		}
+		int[] sorted = adaptiveSort.sort(descending);
+		assertEquals(1, adaptiveSort.getDecisionCount(Strategy.PRESORTED));
+		assertEquals(1, sorted[0]);
+		assertEquals(100, sorted[99]);
+	}
+
+	@Test
+	public void quickStrategySortsOnTheCallingThread() {
+		adaptiveSort.setOverride(Strategy.QUICK);
+		int[] numbers = random(50000, Integer.MAX_VALUE);
+		int[] expected = numbers.clone();
+		Arrays.sort(expected);
+		assertArrayEquals(expected, adaptiveSort.sort(numbers));
+		// Above the quick sort's parallel threshold, yet no worker started
+		assertEquals(0, pool.getPoolSize());
+	}
+
+	@Test
+	public void reversesOnlyStrictlyDescendingInput() {
+		int[] numbers = new int[40];
+		for (int i = 0; i < numbers.length; i++) {
+			numbers[i] = (numbers.length - i) / 2;
+		}
+		int[] expected = numbers.clone();
+		Arrays.sort(expected);
+		assertArrayEquals(expected, adaptiveSort.sort(numbers));
+	}
+
+	private static int[] random(int size, int bound) {
+		Random random = new Random(size);
+		int[] numbers = new int[size];
+		for (int i = 0; i < size; i++) {
+			numbers[i] = random.nextInt(bound);
+		}
+		return numbers;
+	}
+}
@@ -0,0 +1,99 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AutoSearchStrategyTests {
+
+	private final BinarySearchStrategy binary = new BinarySearchStrategy();
+	private final ExponentialSearchStrategy exponential = new ExponentialSearchStrategy();
+	private final InterpolationSearchStrategy interpolation = new InterpolationSearchStrategy();
+	private final AutoSearchStrategy auto = new AutoSearchStrategy(binary,
+			exponential, interpolation);
+
+	private final Random random = new Random(9);
+
+	@Test
+	public void choosesByKeyPositionAndDistribution() {
+		int[] uniform = sorted(1 << 20, false);
+		int[] skewed = sorted(1 << 20, true);
+		assertSame(exponential, auto.choose(uniform, 0, uniform.length, uniform[100]));
+		assertSame(interpolation, auto.choose(uniform, 0, uniform.length, uniform[500000]));
+		assertSame(binary, auto.choose(skewed, 0, skewed.length, skewed[500000]));
+		assertSame(binary, auto.choose(uniform, 0, 100, uniform[50]));
+		assertEquals(Long.valueOf(2), auto.getChoices().get("binary"));
+	}
+
+	@Test
+	public void interpolationNeedsFewerProbesOnUniformKeys() {
+		int[] uniform = sorted(1 << 20, false);
+		for (int i = 0; i < 1000; i++) {
+			int key = uniform[random.nextInt(uniform.length)];
+			assertEquals(binary.lowerBound(uniform, 0, uniform.length, key),
+					interpolation.lowerBound(uniform, 0, uniform.length, key));
+		}
+		assertTrue(interpolation.getProbes() + " vs " + binary.getProbes(),
+				interpolation.getProbes() < binary.getProbes());
+	}
+
+	@Test
+	public void exponentialNeedsFewerProbesNearTheStart() {
+		int[] uniform = sorted(1 << 20, false);
+		for (int i = 0; i < 1000; i++) {
+			int key = uniform[random.nextInt(256)];
+			assertEquals(binary.lowerBound(uniform, 0, uniform.length, key),
+					exponential.lowerBound(uniform, 0, uniform.length, key));
+		}
+		assertTrue(exponential.getProbes() + " vs " + binary.getProbes(),
+				exponential.getProbes() < binary.getProbes());
+	}
+
+	@Test
+	public void binarySearchImplTakesAStrategyPerCall() {
+		int[] numbers = sorted(5000, false);
+		BinarySearchImpl binarySearch = new BinarySearchImpl(
+				new RadixSortAlgorithm(), new SortedArrayCache(
+						SortedArrayCache.KeyMode.IDENTITY, 4, 1 << 20), auto);
+		int key = numbers[4000];
+		assertEquals(4000, binarySearch.binarySearch(numbers, key));
+		assertEquals(4000, binarySearch.binarySearch(numbers, key, exponential));
+		assertEquals(1, exponential.getSearches());
+		assertEquals(-1, binarySearch.binarySearch(numbers, Integer.MIN_VALUE,
+				interpolation));
+	}
+
+	@Test
+	public void samplesACachedArrayOnce() {
+		int[] numbers = sorted(1 << 16, false);
+		SortedArrayCache cache = new SortedArrayCache(
+				SortedArrayCache.KeyMode.IDENTITY, 4, 1 << 20);
+		cache.markImmutable(numbers);
+		SortedArray sorted = cache.sortedArray(numbers, int[]::clone);
+		assertSame(sorted, cache.sortedArray(numbers, int[]::clone));
+		int key = numbers[40000];
+		assertSame(interpolation, auto.choose(sorted, key));
+		assertTrue(sorted.isSampled());
+		long probes = auto.getProbes();
+		assertSame(interpolation, auto.choose(sorted, key));
+		// Only the probe placing the key, no sampling
+		assertEquals(probes + 1, auto.getProbes());
+		assertEquals(binary.lowerBound(numbers, 0, numbers.length, key),
+				auto.lowerBound(sorted, key));
+	}
+
+	private int[] sorted(int size, boolean skewed) {
+		int[] numbers = new int[size];
+		for (int i = 0; i < size; i++) {
+			numbers[i] = skewed ? (int) Math.pow(random.nextInt(1200), 3)
+					: random.nextInt();
+		}
+		Arrays.sort(numbers);
+		return numbers;
+	}
+}
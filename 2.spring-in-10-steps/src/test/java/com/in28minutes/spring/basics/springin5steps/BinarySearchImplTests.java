@@ -0,0 +1,194 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.in28minutes.spring.basics.springin5steps.SortedArrayCache.KeyMode;
+
+public class BinarySearchImplTests {
+
+	private final QuickSortAlgorithm quickSort = new QuickSortAlgorithm(
+			ForkJoinPool.commonPool(), 16, 16384);
+
+	@Test
+	public void findsFirstOccurrenceOrInsertionPoint() {
+		BinarySearchImpl binarySearch = binarySearch(KeyMode.IDENTITY, 16,
+				1 << 20);
+		int[] numbers = { 12, 4, 6, 6, 6, 20 };
+		assertEquals(1, binarySearch.binarySearch(numbers, 6));
+		assertEquals(0, binarySearch.binarySearch(numbers, 4));
+		assertEquals(5, binarySearch.binarySearch(numbers, 20));
+		assertEquals(-1, binarySearch.binarySearch(numbers, 3));
+		assertEquals(-5, binarySearch.binarySearch(numbers, 7));
+		assertEquals(-7, binarySearch.binarySearch(numbers, 21));
+		assertEquals(-1, binarySearch.binarySearch(new int[0], 21));
+	}
+
+	@Test
+	public void doesNotModifyTheSearchedArray() {
+		BinarySearchImpl binarySearch = binarySearch(KeyMode.CONTENT, 16,
+				1 << 20);
+		int[] numbers = { 12, 4, 6 };
+		binarySearch.binarySearch(numbers, 6);
+		assertEquals("[12, 4, 6]", Arrays.toString(numbers));
+	}
+
+	@Test
+	public void reusesSortedFormOfImmutableArrays() {
+		BinarySearchImpl binarySearch = binarySearch(KeyMode.IDENTITY, 16,
+				1 << 20);
+		SortedArrayCache cache = binarySearch.getSortedArrayCache();
+		int[] mutable = randomNumbers(1000);
+		binarySearch.binarySearch(mutable, 1);
+		binarySearch.binarySearch(mutable, 1);
+		assertEquals(0, cache.getHitCount());
+
+		int[] immutable = randomNumbers(1000);
+		binarySearch.markImmutable(immutable);
+		int[] sorted = binarySearch.sorted(immutable);
+		assertSame(sorted, binarySearch.sorted(immutable));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(3, cache.getMissCount());
+	}
+
+	@Test
+	public void dropsEntriesOfCollectedArrays() throws InterruptedException {
+		BinarySearchImpl binarySearch = binarySearch(KeyMode.IDENTITY, 16,
+				1 << 20);
+		SortedArrayCache cache = binarySearch.getSortedArrayCache();
+		int[] immutable = randomNumbers(1000);
+		binarySearch.markImmutable(immutable);
+		binarySearch.sorted(immutable);
+		assertEquals(1000, cache.getCachedElements());
+
+		immutable = null;
+		for (int i = 0; i < 50 && cache.getSize() > 0; i++) {
+			System.gc();
+			Thread.sleep(10);
+			binarySearch.sorted(new int[] { 1 });
+		}
+		assertEquals(0, cache.getSize());
+		assertEquals(0, cache.getCachedElements());
+	}
+
+	@Test
+	public void contentModeMatchesEqualArrays() {
+		BinarySearchImpl binarySearch = binarySearch(KeyMode.CONTENT, 16,
+				1 << 20);
+		int[] numbers = randomNumbers(1000);
+		int[] sorted = binarySearch.sorted(numbers);
+		assertSame(sorted, binarySearch.sorted(numbers.clone()));
+
+		numbers[0]++;
+		binarySearch.sorted(numbers);
+		assertEquals(1, binarySearch.getSortedArrayCache().getHitCount());
+		assertEquals(2, binarySearch.getSortedArrayCache().getMissCount());
+	}
+
+	@Test
+	public void contentModeDoesNotTrustFingerprintAlone() {
+		BinarySearchImpl binarySearch = binarySearch(KeyMode.CONTENT, 16,
+				1 << 20);
+		int[] first = { 16657, 0, 0 };
+		int[] second = { 76069, 0, 1954577426 };
+		assertEquals(SortedArrayCache.fingerprint(first),
+				SortedArrayCache.fingerprint(second));
+		binarySearch.sorted(first);
+		assertArrayEquals(new int[] { 0, 76069, 1954577426 },
+				binarySearch.sorted(second));
+		assertEquals(0, binarySearch.getSortedArrayCache().getHitCount());
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsedEntries() {
+		// Content keys hold a copy of the input, so an entry weighs 2000 ints
+		BinarySearchImpl binarySearch = binarySearch(KeyMode.CONTENT, 2, 5000);
+		SortedArrayCache cache = binarySearch.getSortedArrayCache();
+		int[] first = randomNumbers(1000);
+		int[] second = randomNumbers(1000);
+		int[] third = randomNumbers(1000);
+		binarySearch.sorted(first);
+		binarySearch.sorted(second);
+		binarySearch.sorted(first);
+		binarySearch.sorted(third);
+		assertEquals(1, cache.getEvictionCount());
+		assertEquals(4000, cache.getCachedElements());
+
+		binarySearch.sorted(first);
+		assertEquals(2, cache.getHitCount());
+		binarySearch.sorted(second);
+		assertEquals(2, cache.getHitCount());
+	}
+
+	@Test
+	public void batchSearchMatchesSingleKeySearch() {
+		BinarySearchImpl binarySearch = binarySearch(KeyMode.IDENTITY, 16,
+				1 << 20);
+		int[] numbers = randomNumbers(20000);
+		int[] keys = randomNumbers(50000);
+		int[] sorted = numbers.clone();
+		Arrays.sort(sorted);
+		int[] expected = new int[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			expected[i] = BinarySearchImpl.search(sorted, keys[i]);
+		}
+		assertArrayEquals(expected, binarySearch.binarySearchAll(numbers, keys));
+		assertArrayEquals(expected,
+				binarySearch.binarySearchAll(numbers, keys, true));
+		assertArrayEquals(new int[] { -1, -1 },
+				binarySearch.binarySearchAll(new int[0], new int[] { 5, 5 }));
+		assertArrayEquals(new int[0],
+				binarySearch.binarySearchAll(numbers, new int[0], true));
+	}
+
+	@Test
+	public void eytzingerIndexMatchesBinarySearch() {
+		BinarySearchImpl binarySearch = binarySearch(KeyMode.IDENTITY, 16,
+				1 << 20);
+		for (int size = 0; size < 70; size++) {
+			assertIndexMatches(binarySearch, randomNumbers(size));
+		}
+		assertIndexMatches(binarySearch, randomNumbers(100000));
+		assertIndexMatches(binarySearch, new int[] { Integer.MIN_VALUE, 0, 0,
+				Integer.MAX_VALUE });
+	}
+
+	private void assertIndexMatches(BinarySearchImpl binarySearch,
+			int[] numbers) {
+		EytzingerSearchIndex index = binarySearch.buildIndex(numbers);
+		int[] sorted = binarySearch.sorted(numbers);
+		for (int number : sorted) {
+			for (int key : new int[] { number - 1, number, number + 1 }) {
+				assertEquals(BinarySearchImpl.search(sorted, key),
+						index.search(key));
+			}
+		}
+		assertEquals(BinarySearchImpl.search(sorted, Integer.MIN_VALUE),
+				index.search(Integer.MIN_VALUE));
+		assertEquals(BinarySearchImpl.search(sorted, Integer.MAX_VALUE),
+				index.search(Integer.MAX_VALUE));
+	}
+
+	private BinarySearchImpl binarySearch(KeyMode keyMode, int maxEntries,
+			long maxElements) {
+		return new BinarySearchImpl(quickSort, new SortedArrayCache(keyMode,
+				maxEntries, maxElements));
+	}
+
+	private final Random random = new Random(7);
+
+	private int[] randomNumbers(int size) {
+		int[] numbers = new int[size];
+		for (int i = 0; i < size; i++) {
+			numbers[i] = random.nextInt(size * 4);
+		}
+		return numbers;
+	}
+}
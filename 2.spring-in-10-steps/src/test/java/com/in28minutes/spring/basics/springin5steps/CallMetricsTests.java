@@ -0,0 +1,70 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "instrumentation.enabled=true")
+public class CallMetricsTests {
+
+	@Autowired
+	private BinarySearchImpl binarySearch;
+
+	@Autowired
+	private QuickSortAlgorithm quickSort;
+
+	@Autowired
+	private AdaptiveSortAlgorithm adaptiveSort;
+
+	@Autowired
+	private CallMetrics callMetrics;
+
+	@Test
+	public void recordsCallsOnTheSortAndSearchBeans() {
+		assertTrue(AopUtils.isAopProxy(binarySearch));
+		assertTrue(AopUtils.isAopProxy(quickSort));
+		callMetrics.reset();
+
+		binarySearch.binarySearch(new int[] { 12, 4, 6 }, 4);
+		quickSort.sortInPlace(new int[100], 10, 60);
+		quickSort.getPool();
+		adaptiveSort.choose(new int[100]);
+		binarySearch.markImmutable(new int[10]);
+
+		Map<String, CallRecorder.Snapshot> snapshot = callMetrics.snapshot();
+		assertEquals(1, snapshot.get("binarySearchImpl.binarySearch").getCalls());
+		assertEquals(3, snapshot.get("binarySearchImpl.binarySearch").getElements());
+		assertEquals(50, snapshot.get("quickSortAlgorithm.sortInPlace").getElements());
+		// The sort inside the search is part of the search
+		assertEquals(0, callMetrics.getCalls("adaptiveSortAlgorithm.sort"));
+		// Only sort and search operations are recorded
+		assertEquals(0, callMetrics.getCalls("quickSortAlgorithm.getPool"));
+		assertEquals(0, callMetrics.getCalls("adaptiveSortAlgorithm.choose"));
+		assertEquals(0, callMetrics.getCalls("binarySearchImpl.markImmutable"));
+	}
+
+	@Test
+	public void reportsPercentilesFromTheHistogram() {
+		CallRecorder recorder = new CallRecorder();
+		for (int i = 0; i < 99; i++) {
+			recorder.record(10, 1000);
+		}
+		recorder.record(10, 1000000);
+		CallRecorder.Snapshot snapshot = recorder.snapshot();
+		assertEquals(100, snapshot.getCalls());
+		assertEquals(1000, snapshot.getElements());
+		assertEquals(1024, snapshot.getPercentileNanos(50));
+		assertEquals(1024, snapshot.getPercentileNanos(99));
+		assertEquals(1000000, snapshot.getPercentileNanos(100));
+		assertEquals(1000000, snapshot.getMaxNanos());
+	}
+}
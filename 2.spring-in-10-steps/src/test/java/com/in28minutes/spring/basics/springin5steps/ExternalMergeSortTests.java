@@ -0,0 +1,95 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.in28minutes.spring.basics.springin5steps.SortedArrayCache.KeyMode;
+
+public class ExternalMergeSortTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final QuickSortAlgorithm quickSort = new QuickSortAlgorithm(
+			ForkJoinPool.commonPool(), 16, 16384);
+
+	@Test
+	public void mergesSortedRunsIntoSearchableFile() throws IOException {
+		int[] numbers = new int[100003];
+		Random random = new Random(3);
+		for (int i = 0; i < numbers.length; i++) {
+			numbers[i] = random.nextInt();
+		}
+		MappedIntFile sorted = sort(numbers, 10000);
+
+		int[] expected = numbers.clone();
+		Arrays.sort(expected);
+		assertEquals(expected.length, sorted.size());
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], sorted.get(i));
+		}
+		assertEquals(0, folder.getRoot().list((dir, name) -> name
+				.startsWith("sort-run-")).length);
+
+		BinarySearchImpl binarySearch = new BinarySearchImpl(quickSort,
+				new SortedArrayCache(KeyMode.IDENTITY, 1, 1));
+		for (int i = 0; i < expected.length; i += 97) {
+			assertEquals(BinarySearchImpl.search(expected, expected[i]),
+					binarySearch.binarySearch(sorted, expected[i]));
+			assertEquals(BinarySearchImpl.search(expected, expected[i] + 1),
+					binarySearch.binarySearch(sorted, expected[i] + 1));
+		}
+	}
+
+	@Test
+	public void sortsSingleRunAndEmptyFiles() throws IOException {
+		MappedIntFile sorted = sort(new int[] { 3, -1, 2 }, 10);
+		assertEquals(3, sorted.size());
+		assertEquals(-1, sorted.get(0));
+		assertEquals(3, sorted.get(2));
+
+		assertEquals(0, sort(new int[0], 10).size());
+	}
+
+	@Test
+	public void removesTheRunWhenItCannotBeMovedToTheOutput() throws IOException {
+		File input = folder.newFile();
+		ExternalMergeSort externalMergeSort = new ExternalMergeSort(quickSort,
+				10, folder.getRoot().getPath());
+		try {
+			externalMergeSort.sort(input.toPath(), new File(folder.getRoot(),
+					"missing/sorted").toPath());
+			fail("Moved into a directory that does not exist");
+		} catch (IOException expected) {
+		}
+		assertEquals(0, folder.getRoot().list((dir, name) -> name
+				.startsWith("sort-run-")).length);
+	}
+
+	private MappedIntFile sort(int[] numbers, int runSize) throws IOException {
+		File input = folder.newFile();
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(input)))) {
+			for (int number : numbers) {
+				out.writeInt(number);
+			}
+		}
+		ExternalMergeSort externalMergeSort = new ExternalMergeSort(quickSort,
+				runSize, folder.getRoot().getPath());
+		return externalMergeSort.sort(input.toPath(), new File(
+				folder.getRoot(), input.getName() + ".sorted").toPath());
+	}
+}
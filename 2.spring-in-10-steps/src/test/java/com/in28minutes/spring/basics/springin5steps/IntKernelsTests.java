@@ -0,0 +1,84 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeNotNull;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntKernelsTests {
+
+	private final Random random = new Random(3);
+
+	@Test
+	public void scalarKernelsScanAsSpecified() {
+		assertMatches(new IntKernels(), new ReferenceKernels());
+	}
+
+	// Only runs on a JVM started with --add-modules jdk.incubator.vector
+	@Test
+	public void vectorKernelsMatchTheScalarOnes() {
+		IntKernels vector = IntKernels.vector();
+		assumeNotNull(vector);
+		assertMatches(vector, new IntKernels());
+	}
+
+	private void assertMatches(IntKernels kernels, IntKernels expected) {
+		for (int size = 0; size < 80; size++) {
+			for (int round = 0; round < 20; round++) {
+				int[] a = new int[size];
+				for (int i = 0; i < size; i++) {
+					a[i] = random.nextInt(8) - 4;
+				}
+				// Extremes catch overflowing comparisons
+				if (size > 0 && round % 4 == 0) {
+					a[random.nextInt(size)] = round % 8 == 0 ? Integer.MIN_VALUE
+							: Integer.MAX_VALUE;
+				}
+				int from = size == 0 ? 0 : random.nextInt(size);
+				int to = from + random.nextInt(size - from + 1);
+				int key = random.nextInt(10) - 5;
+				String range = Arrays.toString(a) + " [" + from + ", " + to
+						+ ") " + key;
+				assertEquals(range, expected.nextNotLess(a, from, to, key),
+						kernels.nextNotLess(a, from, to, key));
+				assertEquals(range,
+						expected.previousNotGreater(a, from, to, key),
+						kernels.previousNotGreater(a, from, to, key));
+				assertEquals(range, expected.countLessThan(a, from, to, key),
+						kernels.countLessThan(a, from, to, key));
+			}
+		}
+	}
+
+	private static final class ReferenceKernels extends IntKernels {
+
+		@Override
+		int countLessThan(int[] a, int from, int to, int key) {
+			return (int) Arrays.stream(a, from, to).filter(v -> v < key)
+					.count();
+		}
+
+		@Override
+		int nextNotLess(int[] a, int from, int to, int pivot) {
+			for (int i = from; i < to; i++) {
+				if (a[i] >= pivot) {
+					return i;
+				}
+			}
+			return to;
+		}
+
+		@Override
+		int previousNotGreater(int[] a, int from, int to, int pivot) {
+			for (int i = to - 1; i >= from; i--) {
+				if (a[i] <= pivot) {
+					return i;
+				}
+			}
+			return from - 1;
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class QuickSortAlgorithmTests {
+
+	private final Random random = new Random(11);
+
+	@Test
+	public void detectsLowCardinalityInput() {
+		assertTrue(QuickSortAlgorithm.isLowCardinality(fewDistinct(100000, 1), 0, 100000));
+		assertTrue(QuickSortAlgorithm.isLowCardinality(fewDistinct(100000, 16), 0, 100000));
+		assertFalse(QuickSortAlgorithm.isLowCardinality(fewDistinct(100000, 1 << 20), 0, 100000));
+		// Too small to be worth sampling
+		assertFalse(QuickSortAlgorithm.isLowCardinality(new int[1000], 0, 1000));
+	}
+
+	@Test
+	public void partitionsAroundThePivotInThreeParts() {
+		int[] numbers = fewDistinct(1000, 5);
+		long bounds = QuickSortAlgorithm.partition3(numbers, 0, numbers.length, 2);
+		int lower = (int) (bounds >>> 32);
+		int upper = (int) bounds;
+		assertTrue(lower < upper);
+		for (int i = 0; i < numbers.length; i++) {
+			assertEquals(Integer.signum(i < lower ? -1 : i < upper ? 0 : 1),
+					Integer.signum(Integer.compare(numbers[i], 2)));
+		}
+	}
+
+	private int[] fewDistinct(int size, int distinct) {
+		int[] numbers = new int[size];
+		for (int i = 0; i < size; i++) {
+			numbers[i] = random.nextInt(distinct);
+		}
+		return numbers;
+	}
+}
@@ -0,0 +1,97 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RadixSortAlgorithmTests {
+
+	private final RadixSortAlgorithm radixSort = new RadixSortAlgorithm();
+	private final Random random = new Random(11);
+
+	@Test
+	public void sortsLongs() {
+		for (int size : new int[] { 0, 1, 50, 1000, 100000 }) {
+			long[] numbers = new long[size];
+			for (int i = 0; i < size; i++) {
+				numbers[i] = i % 3 == 0 ? random.nextInt() : random.nextLong();
+			}
+			long[] expected = numbers.clone();
+			Arrays.sort(expected);
+			assertArrayEquals(expected, radixSort.sort(numbers));
+		}
+		long[] extremes = { Long.MAX_VALUE, 0, -1, Long.MIN_VALUE, 1 };
+		long[] range = new long[200];
+		Arrays.fill(range, 5);
+		System.arraycopy(extremes, 0, range, 100, extremes.length);
+		radixSort.sortInPlace(range, 100, 105);
+		assertArrayEquals(new long[] { Long.MIN_VALUE, -1, 0, 1,
+				Long.MAX_VALUE }, Arrays.copyOfRange(range, 100, 105));
+		assertEquals(5, range[99]);
+		assertEquals(5, range[105]);
+	}
+
+	@Test
+	public void sortsDoublesLikeArraysSort() {
+		double[] special = { Double.NaN, 0.0, -0.0, Double.NEGATIVE_INFINITY,
+				Double.POSITIVE_INFINITY, Double.MIN_VALUE, -Double.MIN_VALUE,
+				Double.MAX_VALUE, -Double.MAX_VALUE, Double.longBitsToDouble(0xfff8000000000001L),
+				1.5, -1.5 };
+		for (int size : new int[] { special.length, 1000, 100000 }) {
+			double[] numbers = new double[size];
+			for (int i = 0; i < size; i++) {
+				numbers[i] = i < special.length ? special[i]
+						: random.nextGaussian() * 1e6;
+			}
+			double[] expected = numbers.clone();
+			Arrays.sort(expected);
+			assertArrayEquals(expected, radixSort.sort(numbers), 0.0);
+			// A zero delta still treats -0.0 and 0.0 as equal
+			assertEquals(Double.doubleToLongBits(-0.0), Double
+					.doubleToLongBits(numbers[Arrays.binarySearch(expected, -0.0)]));
+		}
+	}
+
+	@Test
+	public void argsortIsStableAndDoesNotTouchKeys() {
+		for (int size : new int[] { 0, 1, 60, 5000, 100000 }) {
+			int[] keys = new int[size];
+			for (int i = 0; i < size; i++) {
+				keys[i] = random.nextInt(size / 2 + 1) - size / 4;
+			}
+			int[] original = keys.clone();
+			int[] permutation = radixSort.argsort(keys);
+			assertArrayEquals(original, keys);
+
+			int[] expected = keys.clone();
+			Arrays.sort(expected);
+			for (int i = 0; i < size; i++) {
+				assertEquals(expected[i], keys[permutation[i]]);
+				if (i > 0 && keys[permutation[i]] == keys[permutation[i - 1]]) {
+					assertEquals(true, permutation[i] > permutation[i - 1]);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void dropsOversizeBuffersAfterUse() {
+		int size = RadixSortAlgorithm.MAX_RETAINED_ELEMENTS + 1;
+		int[] ints = random.ints(size).toArray();
+		radixSort.sortInPlace(ints, 0, size);
+		radixSort.sort(random.doubles(size).toArray());
+		radixSort.argsort(random.ints(size).toArray());
+		assertEquals(0, radixSort.retainedBytes());
+
+		radixSort.sortInPlace(random.ints(1000).toArray(), 0, 1000);
+		assertTrue(radixSort.retainedBytes() > 0);
+		assertTrue(radixSort.retainedBytes() <= 20L
+				* RadixSortAlgorithm.MAX_RETAINED_ELEMENTS);
+	}
+
+}
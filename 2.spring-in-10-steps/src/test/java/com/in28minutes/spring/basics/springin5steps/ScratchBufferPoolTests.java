@@ -0,0 +1,60 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ScratchBufferPoolTests {
+
+	private final ScratchBufferPool pool = new ScratchBufferPool(0);
+
+	@After
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void reusesBuffersPerSizeClass() {
+		int[] buffer = pool.acquire(1000);
+		assertEquals(1024, buffer.length);
+		pool.release(buffer);
+		assertSame(buffer, pool.acquire(600));
+		// Taken and not yet released, so the next one is new
+		assertNotSame(buffer, pool.acquire(1000));
+		assertEquals(64, pool.acquire(1).length);
+		assertEquals(3, pool.getAllocations());
+	}
+
+	@Test
+	public void keepsBuffersPerThread() throws Exception {
+		int[] buffer = pool.acquire(100);
+		pool.release(buffer);
+		int[][] other = new int[1][];
+		Thread thread = new Thread(() -> other[0] = pool.acquire(100));
+		thread.start();
+		thread.join();
+		assertNotSame(buffer, other[0]);
+		assertSame(buffer, pool.acquire(100));
+	}
+
+	@Test
+	public void dropsIdleBuffers() throws Exception {
+		ScratchBufferPool trimming = new ScratchBufferPool(20);
+		try {
+			trimming.release(trimming.acquire(4096));
+			assertEquals(4L * 4096, trimming.getRetainedBytes());
+			long deadline = System.currentTimeMillis() + 5000;
+			while (trimming.getRetainedBytes() > 0
+					&& System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals(0, trimming.getRetainedBytes());
+			assertEquals(1, trimming.getTrimmed());
+		} finally {
+			trimming.shutdown();
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+@RunWith(Parameterized.class)
+public class SearchStrategyTests {
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> strategies() {
+		return Arrays.asList(new Object[][] {
+				{ "binary", new BinarySearchStrategy() },
+				{ "exponential", new ExponentialSearchStrategy() },
+				{ "interpolation", new InterpolationSearchStrategy() },
+				{ "auto", new AutoSearchStrategy(new BinarySearchStrategy(),
+						new ExponentialSearchStrategy(),
+						new InterpolationSearchStrategy()) } });
+	}
+
+	private final SearchStrategy strategy;
+	private final Random random = new Random(5);
+
+	public SearchStrategyTests(String name, SearchStrategy strategy) {
+		this.strategy = strategy;
+	}
+
+	@Test
+	public void findsTheLowerBoundOnEveryDistribution() {
+		for (int size : new int[] { 0, 1, 2, 17, 100, 5000, 100000 }) {
+			int[] uniform = new int[size];
+			int[] skewed = new int[size];
+			int[] duplicates = new int[size];
+			int[] extremes = new int[size];
+			for (int i = 0; i < size; i++) {
+				uniform[i] = random.nextInt();
+				skewed[i] = (int) Math.pow(random.nextInt(1000), 3);
+				duplicates[i] = random.nextInt(4);
+				extremes[i] = random.nextBoolean() ? Integer.MIN_VALUE
+						: Integer.MAX_VALUE;
+			}
+			for (int[] numbers : new int[][] { uniform, skewed, duplicates,
+					extremes }) {
+				Arrays.sort(numbers);
+				for (int i = 0; i < 200; i++) {
+					int key = size > 0 && i % 2 == 0 ? numbers[random
+							.nextInt(size)] : random.nextInt();
+					assertLowerBound(numbers, key);
+				}
+				assertLowerBound(numbers, Integer.MIN_VALUE);
+				assertLowerBound(numbers, Integer.MAX_VALUE);
+			}
+		}
+	}
+
+	@Test
+	public void searchesSubRanges() {
+		int[] numbers = new int[1000];
+		for (int i = 0; i < numbers.length; i++) {
+			numbers[i] = i * 3;
+		}
+		assertEquals(500, strategy.lowerBound(numbers, 100, 900, 1500));
+		assertEquals(100, strategy.lowerBound(numbers, 100, 900, 0));
+		assertEquals(900, strategy.lowerBound(numbers, 100, 900, 5000));
+	}
+
+	@Test
+	public void countsSearchesAndProbes() {
+		long searches = strategy.getSearches();
+		long probes = strategy.getProbes();
+		strategy.lowerBound(new int[] { 1, 2, 3 }, 0, 3, 2);
+		assertEquals(searches + 1, strategy.getSearches());
+		assertTrue(strategy.getProbes() > probes
+				|| strategy instanceof AutoSearchStrategy);
+	}
+
+	private void assertLowerBound(int[] numbers, int key) {
+		int expected = 0;
+		while (expected < numbers.length && numbers[expected] < key) {
+			expected++;
+		}
+		assertEquals(expected, strategy.lowerBound(numbers, 0, numbers.length,
+				key));
+	}
+}
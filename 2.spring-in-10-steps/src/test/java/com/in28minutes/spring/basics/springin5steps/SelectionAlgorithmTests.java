@@ -0,0 +1,83 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SelectionAlgorithmTests {
+
+	private final SelectionAlgorithm selection = new SelectionAlgorithm();
+	private final Random random = new Random(5);
+
+	@Test
+	public void selectsKthSmallestAndPartitionsAroundIt() {
+		for (int size : new int[] { 1, 10, 1000, 100000 }) {
+			int[] numbers = random(size, size);
+			int[] sorted = numbers.clone();
+			Arrays.sort(sorted);
+			for (int k : new int[] { 0, size / 3, size / 2, size - 1 }) {
+				int[] work = numbers.clone();
+				assertEquals(sorted[k], selection.select(work, k));
+				for (int i = 0; i < size; i++) {
+					assertTrue(i < k ? work[i] <= work[k] : work[i] >= work[k]);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void selectsOnFewDistinctValues() {
+		int[] numbers = random(50000, 2);
+		assertEquals(0, selection.select(numbers.clone(), 100));
+		assertEquals(1, selection.select(numbers.clone(), 49999));
+	}
+
+	@Test
+	public void returnsTopAndBottomK() {
+		int[] numbers = random(10000, Integer.MAX_VALUE);
+		int[] sorted = numbers.clone();
+		Arrays.sort(sorted);
+
+		int[] expectedTop = new int[100];
+		for (int i = 0; i < 100; i++) {
+			expectedTop[i] = sorted[sorted.length - 1 - i];
+		}
+		assertArrayEquals(expectedTop, selection.topK(numbers.clone(), 100));
+		assertArrayEquals(Arrays.copyOf(sorted, 100),
+				selection.bottomK(numbers.clone(), 100));
+		assertArrayEquals(new int[0], selection.topK(numbers.clone(), 0));
+		assertEquals(sorted.length, selection.topK(numbers.clone(),
+				sorted.length).length);
+	}
+
+	@Test
+	public void collectsTopKFromAStream() {
+		int[] numbers = random(100000, 1000000);
+		TopKCollector first = selection.topKCollector(50);
+		TopKCollector second = selection.topKCollector(50);
+		first.offer(numbers, 0, 60000);
+		second.offer(numbers, 60000, numbers.length);
+		first.merge(second);
+
+		assertArrayEquals(selection.topK(numbers.clone(), 50), first.result());
+		assertEquals(60050, first.getOfferedCount());
+
+		TopKCollector small = selection.topKCollector(5);
+		small.offer(3);
+		small.offer(1);
+		assertArrayEquals(new int[] { 3, 1 }, small.result());
+	}
+
+	private int[] random(int size, int bound) {
+		int[] numbers = new int[size];
+		for (int i = 0; i < size; i++) {
+			numbers[i] = random.nextInt(bound);
+		}
+		return numbers;
+	}
+}
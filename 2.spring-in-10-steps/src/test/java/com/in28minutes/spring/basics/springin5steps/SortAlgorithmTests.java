@@ -0,0 +1,164 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.sun.management.ThreadMXBean;
+
+@RunWith(Parameterized.class)
+public class SortAlgorithmTests {
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> algorithms() {
+		return Arrays.asList(new Object[][] {
+				{ "bubble", new BubbleSortAlgorithm(), 2000, true },
+				{ "quick", new QuickSortAlgorithm(ForkJoinPool.commonPool(), 16, 16384), 100000, true },
+				// Forks tasks for every range above 64 ints
+				{ "quick-parallel", new QuickSortAlgorithm(ForkJoinPool.commonPool(), 8, 64), 100000, false },
+				{ "quick-two-way", new QuickSortAlgorithm(ForkJoinPool.commonPool(), 16, 16384,
+						QuickSortAlgorithm.Partitioning.TWO_WAY), 100000, true },
+				{ "quick-three-way", new QuickSortAlgorithm(ForkJoinPool.commonPool(), 8, 64,
+						QuickSortAlgorithm.Partitioning.THREE_WAY), 100000, false },
+				{ "radix", new RadixSortAlgorithm(), 100000, true },
+				{ "merge", new MergeSortAlgorithm(new ScratchBufferPool(0), ForkJoinPool.commonPool(), 1 << 20), 100000, true },
+				// Splits sorts and merges above 64 ints
+				{ "merge-parallel", new MergeSortAlgorithm(new ScratchBufferPool(0), ForkJoinPool.commonPool(), 64), 100000, false },
+				{ "adaptive", new AdaptiveSortAlgorithm(
+						new QuickSortAlgorithm(ForkJoinPool.commonPool(), 16, 1024),
+						new RadixSortAlgorithm(), 16, 20000, 512, 60000, null), 100000, true } });
+	}
+
+	private final SortAlgorithm sortAlgorithm;
+	private final int maxSize;
+	private final boolean allocationFree;
+
+	public SortAlgorithmTests(String name, SortAlgorithm sortAlgorithm,
+			int maxSize, boolean allocationFree) {
+		this.sortAlgorithm = sortAlgorithm;
+		this.maxSize = maxSize;
+		this.allocationFree = allocationFree;
+	}
+
+	@Test
+	public void sortsEmptyAndSingleElementArrays() {
+		assertSorts(new int[0]);
+		assertSorts(new int[] { 42 });
+	}
+
+	@Test
+	public void sortsRandomArrays() {
+		for (int size : new int[] { 2, 3, 17, 100, 1000, 100000 }) {
+			if (size <= maxSize) {
+				assertSorts(random(size));
+			}
+		}
+	}
+
+	@Test
+	public void sortsStructuredArrays() {
+		int size = Math.min(50000, maxSize);
+		int[] sorted = new int[size];
+		int[] reversed = new int[size];
+		int[] fewUnique = new int[size];
+		int[] sawtooth = new int[size];
+		for (int i = 0; i < size; i++) {
+			sorted[i] = i;
+			reversed[i] = size - i;
+			fewUnique[i] = i % 3;
+			sawtooth[i] = i % 1000;
+		}
+		assertSorts(sorted);
+		assertSorts(reversed);
+		assertSorts(fewUnique);
+		assertSorts(sawtooth);
+		assertSorts(new int[] { Integer.MAX_VALUE, -1, 0, Integer.MIN_VALUE, 1 });
+	}
+
+	@Test
+	public void sortsArraysWithFewDistinctValues() {
+		Random random = new Random(7);
+		int size = Math.min(50000, maxSize);
+		for (int distinct : new int[] { 1, 2, 16, 256 }) {
+			int[] numbers = new int[size];
+			for (int i = 0; i < size; i++) {
+				numbers[i] = random.nextInt(distinct) * 1000 - 500;
+			}
+			assertSorts(numbers);
+		}
+	}
+
+	@Test
+	public void sortsRangeInPlaceAndIntoDestination() {
+		int[] numbers = random(Math.min(5000, maxSize));
+		int from = numbers.length / 5;
+		int to = numbers.length - from;
+		int[] expected = numbers.clone();
+		Arrays.sort(expected, from, to);
+		sortAlgorithm.sortInPlace(numbers, from, to);
+		assertArrayEquals(expected, numbers);
+
+		int[] source = random(numbers.length);
+		int[] untouched = source.clone();
+		int[] destination = new int[source.length + 1];
+		destination[source.length] = 7;
+		sortAlgorithm.sortInto(source, destination);
+		assertArrayEquals(untouched, source);
+		Arrays.sort(untouched);
+		assertArrayEquals(untouched, Arrays.copyOf(destination, source.length));
+		assertTrue(destination[source.length] == 7);
+	}
+
+	@Test
+	public void doesNotAllocateAfterWarmUp() {
+		ThreadMXBean threads = (ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		assumeTrue(allocationFree && threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		long thread = Thread.currentThread().getId();
+
+		int[] source = random(1000);
+		int[] numbers = new int[source.length];
+		for (int i = 0; i < 50; i++) {
+			sortAlgorithm.sortInto(source, numbers);
+			sortAlgorithm.sortInPlace(source.clone(), 10, 990);
+		}
+
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < 100; i++) {
+			sortAlgorithm.sortInto(source, numbers);
+			System.arraycopy(source, 0, numbers, 0, source.length);
+			sortAlgorithm.sortInPlace(numbers, 10, 990);
+		}
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+		// Leaves room for the few bytes the measurement itself allocates; a
+		// single scratch copy of the input would already be 4000 bytes
+		assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+	}
+
+	private static int[] random(int size) {
+		Random random = new Random(size);
+		int[] numbers = new int[size];
+		for (int i = 0; i < size; i++) {
+			numbers[i] = random.nextInt();
+		}
+		return numbers;
+	}
+
+	private void assertSorts(int[] numbers) {
+		int[] expected = numbers.clone();
+		Arrays.sort(expected);
+		assertArrayEquals(expected, sortAlgorithm.sort(numbers));
+	}
+}
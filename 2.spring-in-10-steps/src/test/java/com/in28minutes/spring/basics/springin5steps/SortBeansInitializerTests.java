@@ -0,0 +1,55 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.context.ConfigurableApplicationContext;
+
+public class SortBeansInitializerTests {
+
+	@Test
+	public void registersTheSortAndSearchBeansWithoutScanning() {
+		try (ConfigurableApplicationContext context = SpringIn5StepsFunctionalApplication
+				.run("--sort.quick.insertion-sort-threshold=24",
+						"--sort.quick.partitioning=THREE_WAY",
+						"--sort.external.run-size=4096",
+						"--instrumentation.enabled=true")) {
+			assertEquals(new TreeSet<>(Arrays.asList("adaptiveSortAlgorithm",
+					"bubbleSortAlgorithm", "mergeSortAlgorithm",
+					"quickSortAlgorithm", "radixSortAlgorithm")),
+					new TreeSet<>(Arrays.asList(context
+							.getBeanNamesForType(SortAlgorithm.class))));
+			assertTrue(context.getBean(SortAlgorithm.class) instanceof BubbleSortAlgorithm);
+
+			QuickSortAlgorithm quickSort = context.getBean(QuickSortAlgorithm.class);
+			assertEquals(24, quickSort.getInsertionSortThreshold());
+			assertEquals(QuickSortAlgorithm.Partitioning.THREE_WAY,
+					quickSort.getPartitioning());
+
+			assertEquals(4096, context.getBean(ExternalMergeSort.class).getRunSize());
+			assertEquals(6, context.getBean(SelectionAlgorithm.class).select(
+					new int[] { 12, 4, 6 }, 1));
+
+			BinarySearchImpl binarySearch = context.getBean(BinarySearchImpl.class);
+			assertTrue(AopUtils.isAopProxy(binarySearch));
+			assertEquals(-2, binarySearch.binarySearch(new int[] { 12, 4, 6 }, 5));
+			assertEquals(1, context.getBean(CallMetrics.class).getCalls(
+					"binarySearchImpl.binarySearch"));
+		}
+	}
+
+	@Test
+	public void leavesTheBeansUninstrumentedByDefault() {
+		try (ConfigurableApplicationContext context = SpringIn5StepsFunctionalApplication
+				.run()) {
+			assertFalse(context.containsBean("instrumentationBeanPostProcessor"));
+			assertFalse(AopUtils.isAopProxy(context.getBean(BinarySearchImpl.class)));
+		}
+	}
+}
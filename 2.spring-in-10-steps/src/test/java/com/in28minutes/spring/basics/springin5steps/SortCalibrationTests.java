@@ -0,0 +1,64 @@
+package com.in28minutes.spring.basics.springin5steps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SortCalibrationTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final SortThresholds configured = new SortThresholds(32, 16384,
+			false);
+
+	private final ForkJoinPool pool = new ForkJoinPool(2);
+
+	private final SortCalibration calibration = new SortCalibration(pool,
+			4096, 65536, 3);
+
+	@After
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void picksThresholdsFromTheCandidates() {
+		SortThresholds thresholds = calibration.calibrate(configured);
+		assertTrue(thresholds.isCalibrated());
+		assertTrue(Arrays.stream(SortCalibration.INSERTION_SORT_CANDIDATES)
+				.anyMatch(c -> c == thresholds.getInsertionSortThreshold()));
+		assertTrue(Arrays.stream(SortCalibration.PARALLEL_CANDIDATES)
+				.anyMatch(c -> c == thresholds.getParallelThreshold()));
+	}
+
+	@Test
+	public void storesThresholdsAndReusesThemOnTheSameHost() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("nested/thresholds.properties");
+		assertNull(SortThresholds.load(file));
+
+		SortThresholds calibrated = calibration.loadOrCalibrate(file, configured);
+		assertTrue(Files.exists(file));
+		SortThresholds loaded = calibration.loadOrCalibrate(file, configured);
+		assertEquals(calibrated.getInsertionSortThreshold(), loaded.getInsertionSortThreshold());
+		assertEquals(calibrated.getParallelThreshold(), loaded.getParallelThreshold());
+		assertEquals(1, Files.list(file.getParent()).count());
+
+		// A file from another host is ignored
+		Files.write(file, Collections.singletonList("host=elsewhere"));
+		assertNull(SortThresholds.load(file));
+		assertFalse(configured.isCalibrated());
+	}
+}
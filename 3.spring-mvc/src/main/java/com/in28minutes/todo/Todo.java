@@ -6,10 +6,13 @@ import javax.validation.constraints.Size;
 
 public class Todo {
 
+	public static final int MAX_DESC_LENGTH = 1000;
+
 	private int id;
 	private String user;
 
-	@Size(min = 6, message = "Enter atleast 6 characters")
+	@Size(min = 6, max = MAX_DESC_LENGTH, message = "Enter between 6 and "
+			+ MAX_DESC_LENGTH + " characters")
 	private String desc;
 
 	private Date targetDate;
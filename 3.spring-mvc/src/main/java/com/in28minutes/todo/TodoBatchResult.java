@@ -0,0 +1,36 @@
+package com.in28minutes.todo;
+
+// Outcome of one item of a batch, in the same position as the item
+public class TodoBatchResult {
+
+	public enum Status {
+		CREATED, UPDATED, DELETED, NOT_FOUND, INVALID
+	}
+
+	private final int id;
+	private final Status status;
+	private final String message;
+
+	public TodoBatchResult(int id, Status status, String message) {
+		this.id = id;
+		this.status = status;
+		this.message = message;
+	}
+
+	public TodoBatchResult(int id, Status status) {
+		this(id, status, null);
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+}
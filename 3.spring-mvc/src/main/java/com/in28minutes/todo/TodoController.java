@@ -2,6 +2,7 @@ package com.in28minutes.todo;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Locale;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
@@ -12,6 +13,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.propertyeditors.CustomDateEditor;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.web.csrf.CsrfToken;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.ModelMap;
 import org.springframework.validation.BindingResult;
@@ -22,6 +24,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.SessionAttributes;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import com.in28minutes.exception.ExceptionController;
 
@@ -34,6 +38,9 @@ public class TodoController {
 	@Autowired
 	TodoService service;
 
+	@Autowired
+	TodoEtags etags;
+
 	@InitBinder
 	protected void initBinder(WebDataBinder binder) {
 		SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy");
@@ -42,9 +49,28 @@ public class TodoController {
 	}
 
 	@RequestMapping(value = "/list-todos", method = RequestMethod.GET)
-	public String listTodos(ModelMap model) {
-		model.addAttribute("todos",
-				service.retrieveTodos(retrieveLoggedinUserName()));
+	public String listTodos(ModelMap model, ServletWebRequest request,
+			Locale locale, @RequestParam(required = false) String after,
+			@RequestParam(required = false) String before,
+			@RequestParam(defaultValue = "0") int size) {
+		String user = retrieveLoggedinUserName();
+		// The page is rendered in the session's locale and carries the
+		// session's CSRF token, so both are part of the tag; a copy kept from
+		// before a re-login must not be revalidated with a stale token
+		CsrfToken csrf = (CsrfToken) request.getAttribute(
+				CsrfToken.class.getName(), RequestAttributes.SCOPE_REQUEST);
+		String variant = "html-" + locale;
+		if (csrf != null) {
+			variant += "-" + Integer.toHexString(csrf.getToken().hashCode());
+		}
+		if (etags.checkNotModified(request, "list-todos", etags.etag(
+				service.getEpoch(), user, service.retrieveUserVersion(user),
+				variant))) {
+			return null;
+		}
+		TodoPage page = service.retrieveTodos(user, after, before, size);
+		model.addAttribute("todos", page.getTodos());
+		model.addAttribute("page", page);
 		return "list-todos";
 	}
 
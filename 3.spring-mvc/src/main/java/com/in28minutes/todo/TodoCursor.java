@@ -0,0 +1,63 @@
+package com.in28minutes.todo;
+
+import java.util.Date;
+
+// Position of a todo in a user's list, which is ordered by target date and
+// then id; todos without a target date come first. The string form is what
+// pages hand out as next and previous cursors.
+public final class TodoCursor implements Comparable<TodoCursor> {
+
+	private static final long NO_DATE = Long.MIN_VALUE;
+
+	private final long targetDate;
+	private final int id;
+
+	private TodoCursor(long targetDate, int id) {
+		this.targetDate = targetDate;
+		this.id = id;
+	}
+
+	public static TodoCursor of(Todo todo) {
+		Date date = todo.getTargetDate();
+		return new TodoCursor(date == null ? NO_DATE : date.getTime(), todo.getId());
+	}
+
+	public static TodoCursor parse(String cursor) {
+		int separator = cursor.lastIndexOf('_');
+		try {
+			if (separator > 0) {
+				return new TodoCursor(Long.parseLong(cursor.substring(0, separator)),
+						Integer.parseInt(cursor.substring(separator + 1)));
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		throw new IllegalArgumentException("Invalid cursor " + cursor);
+	}
+
+	@Override
+	public int compareTo(TodoCursor other) {
+		int result = Long.compare(targetDate, other.targetDate);
+		return result != 0 ? result : Integer.compare(id, other.id);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof TodoCursor)) {
+			return false;
+		}
+		TodoCursor other = (TodoCursor) obj;
+		return targetDate == other.targetDate && id == other.id;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Long.hashCode(targetDate) + id;
+	}
+
+	@Override
+	public String toString() {
+		return targetDate + "_" + id;
+	}
+
+}
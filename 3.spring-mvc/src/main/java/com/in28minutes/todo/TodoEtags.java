@@ -0,0 +1,77 @@
+package com.in28minutes.todo;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+// Conditional GET for the todo endpoints. An ETag is built from the store
+// epoch, which changes on every restart because versions start over, the
+// user, the version and the representation, so a tag never matches content
+// it was not issued for. Cache-Control is relaxed from Spring Security's
+// no-store to private revalidation so browsers keep the copy and ask.
+// Handlers read the version before the todos: a write in between then costs
+// a refetch instead of a wrong 304.
+@Component
+@ManagedResource(objectName = "com.in28minutes:type=TodoEtags")
+public class TodoEtags {
+
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder notModified = new LongAdder();
+	private final Map<String, LongAdder[]> byEndpoint = new ConcurrentHashMap<String, LongAdder[]>();
+
+	public String etag(String epoch, String user, long version, String variant) {
+		return "\"" + epoch + "-" + Integer.toHexString(user.hashCode()) + "-"
+				+ Long.toString(version, 36) + "-" + variant + "\"";
+	}
+
+	// Sets the ETag header and, when If-None-Match matches, the 304 status;
+	// the handler then returns null without reading or rendering anything
+	public boolean checkNotModified(ServletWebRequest request, String endpoint, String etag) {
+		request.getResponse().setHeader("Cache-Control", "private, no-cache");
+		LongAdder[] counters = byEndpoint.get(endpoint);
+		if (counters == null) {
+			byEndpoint.putIfAbsent(endpoint, new LongAdder[] { new LongAdder(), new LongAdder() });
+			counters = byEndpoint.get(endpoint);
+		}
+		requests.increment();
+		counters[0].increment();
+		if (!request.checkNotModified(etag)) {
+			return false;
+		}
+		notModified.increment();
+		counters[1].increment();
+		return true;
+	}
+
+	@ManagedAttribute
+	public long getRequests() {
+		return requests.sum();
+	}
+
+	@ManagedAttribute
+	public long getNotModified() {
+		return notModified.sum();
+	}
+
+	@ManagedAttribute
+	public double getHitRate() {
+		return rate(notModified.sum(), requests.sum());
+	}
+
+	@ManagedOperation
+	public double hitRate(String endpoint) {
+		LongAdder[] counters = byEndpoint.get(endpoint);
+		return counters == null ? 0 : rate(counters[1].sum(), counters[0].sum());
+	}
+
+	private static double rate(long hits, long total) {
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+}
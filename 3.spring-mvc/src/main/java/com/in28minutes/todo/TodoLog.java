@@ -0,0 +1,665 @@
+package com.in28minutes.todo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+// Append only log of todo changes with group commit. Callers enqueue records
+// in the order they change the store and then wait for them to be durable; a
+// single writer thread drains everything queued so far, writes it with one
+// gathering write and forces it with one fsync, so concurrent requests share
+// the cost of a sync. The log is split into numbered segments. A snapshot
+// records the whole store as of the start of a segment, after which the
+// older segments are deleted, and recovery loads the latest snapshot and
+// replays only the segments from there on.
+//
+// Record layout: int length, int crc32 of the payload, payload. Strings in
+// the payload are an int byte count, -1 for null, and UTF-8 bytes. A record
+// over MAX_RECORD is refused when it is built, so the caller can fail before
+// changing anything. A torn or
+// corrupt record at the end of the newest segment is what a crash in the
+// middle of a write leaves behind, so it is cut off; anywhere else it is an
+// error. Once a write fails the log refuses further writes.
+//
+// The directory is todo.log.directory, by default data/todos under the
+// working directory of the server.
+@Component
+@ManagedResource(objectName = "com.in28minutes:type=TodoLog")
+public class TodoLog {
+
+	public interface Replay {
+
+		void put(Todo todo);
+
+		void delete(int id);
+
+	}
+
+	// Marks where a snapshot starts; rolled completes once the new segment
+	// is open and everything before it is durable
+	public static class Checkpoint {
+
+		private final int segment;
+		private final CompletableFuture<Void> rolled;
+
+		private Checkpoint(int segment, CompletableFuture<Void> rolled) {
+			this.segment = segment;
+			this.rolled = rolled;
+		}
+
+		public int getSegment() {
+			return segment;
+		}
+
+	}
+
+	private static class Entry {
+
+		final ByteBuffer record;
+		final int rollTo;
+		final long enqueued = System.nanoTime();
+		final CompletableFuture<Void> done = new CompletableFuture<Void>();
+
+		Entry(ByteBuffer record, int rollTo) {
+			this.record = record;
+			this.rollTo = rollTo;
+		}
+
+	}
+
+	private static final Log logger = LogFactory.getLog(TodoLog.class);
+
+	private static final byte PUT = 1;
+	private static final byte DELETE = 2;
+	private static final int SNAPSHOT_MAGIC = 0x54445332;
+	static final int MAX_RECORD = 1 << 20;
+	private static final int MAX_BATCH = 1024;
+	private static final String SNAPSHOT = "todos.snapshot";
+	private static final Entry CLOSE = new Entry(null, -1);
+
+	private final Path directory;
+	private final long snapshotEvery;
+	private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<Entry>();
+
+	// Owned by the writer thread once recover has started it
+	private FileChannel channel;
+	private volatile int segment = -1;
+	private volatile Thread writer;
+	private volatile IOException failure;
+	private int nextSegment;
+
+	private final AtomicLong recordsSinceSnapshot = new AtomicLong();
+	private final LongAdder appends = new LongAdder();
+	private final LongAdder fsyncs = new LongAdder();
+	private final LongAdder bytesWritten = new LongAdder();
+	private final LongAdder commitNanos = new LongAdder();
+	private final LongAccumulator maxCommitNanos = new LongAccumulator(Math::max, 0);
+	private final LongAdder snapshots = new LongAdder();
+	private volatile long lastSnapshotMillis;
+	private volatile int lastSnapshotTodos;
+	private volatile long recoveryMillis;
+	private volatile long recoveredRecords;
+
+	@Autowired
+	public TodoLog(
+			@Value("${todo.log.directory:data/todos}") String directory,
+			@Value("${todo.log.snapshot-every:10000}") long snapshotEvery) {
+		this.directory = Paths.get(directory);
+		this.snapshotEvery = snapshotEvery;
+	}
+
+	// Loads the snapshot and replays the segments after it, then opens a new
+	// segment for writing. Returns the last id handed out as of the snapshot,
+	// or -1 when the directory held no data at all.
+	public synchronized int recover(Replay replay) {
+		if (writer != null) {
+			throw new IllegalStateException("Log already recovered");
+		}
+		long start = System.nanoTime();
+		try {
+			Files.createDirectories(directory);
+			int lastId = -1;
+			int firstSegment = 0;
+			Path snapshot = directory.resolve(SNAPSHOT);
+			if (Files.exists(snapshot)) {
+				DataInputStream in = new DataInputStream(new ByteArrayInputStream(verifiedSnapshot(snapshot)));
+				firstSegment = in.readInt();
+				lastId = in.readInt();
+				for (int count = in.readInt(); count > 0; count--) {
+					replay.put(readTodo(in));
+				}
+			}
+			List<Integer> segments = segments();
+			long records = 0;
+			int lastSegment = firstSegment;
+			for (int i = 0; i < segments.size(); i++) {
+				int number = segments.get(i);
+				if (number < firstSegment) {
+					Files.delete(segmentPath(number));
+					continue;
+				}
+				records += replay(number, replay, i == segments.size() - 1);
+				lastSegment = Math.max(lastSegment, number);
+				lastId = Math.max(lastId, 0);
+			}
+			recoveredRecords = records;
+			recordsSinceSnapshot.set(records);
+			nextSegment = lastSegment + 1;
+			channel = openSegment(nextSegment);
+			segment = nextSegment;
+			writer = new Thread(this::writeLoop, "todo-log-writer");
+			writer.setDaemon(true);
+			writer.start();
+			return lastId;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot recover todo log in " + directory, e);
+		} finally {
+			recoveryMillis = (System.nanoTime() - start) / 1000000;
+			logger.info("Recovered " + recoveredRecords + " log records from " + directory + " in "
+					+ recoveryMillis + " ms");
+		}
+	}
+
+	// Several records that go to the log as one write; they are framed
+	// individually, so replay is unchanged, but a crash mid write can leave a
+	// prefix of a batch behind
+	public class Batch {
+
+		private final RecordBuffer bytes = new RecordBuffer();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+		private int records;
+
+		private Batch() {
+		}
+
+		public void put(Todo todo) {
+			int start = bytes.size();
+			try {
+				out.writeLong(0);
+				out.writeByte(PUT);
+				writeTodo(out, todo);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			if (bytes.size() - start - 8 > MAX_RECORD) {
+				// The batch holds part of the record now and must be dropped
+				throw new IllegalArgumentException("Todo " + todo.getId() + " is too large to store");
+			}
+			bytes.frame(start);
+			records++;
+		}
+
+		public void delete(int id) {
+			int start = bytes.size();
+			try {
+				out.writeLong(0);
+				out.writeByte(DELETE);
+				out.writeInt(id);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			bytes.frame(start);
+			records++;
+		}
+
+		public boolean isEmpty() {
+			return records == 0;
+		}
+
+		public CompletableFuture<Void> commit() {
+			checkWritable();
+			Entry entry = new Entry(bytes.toByteBuffer(), -1);
+			queue.add(entry);
+			recordsSinceSnapshot.addAndGet(records);
+			return entry.done;
+		}
+
+	}
+
+	private static class RecordBuffer extends ByteArrayOutputStream {
+
+		RecordBuffer() {
+			super(64);
+		}
+
+		// Fills in the length and crc of the record written since start
+		void frame(int start) {
+			int length = count - start - 8;
+			CRC32 crc = new CRC32();
+			crc.update(buf, start + 8, length);
+			ByteBuffer.wrap(buf, start, 8).putInt(length).putInt((int) crc.getValue());
+		}
+
+		ByteBuffer toByteBuffer() {
+			return ByteBuffer.wrap(buf, 0, count);
+		}
+
+	}
+
+	// Callers enqueue in the same order as they change the store, so they
+	// call these while holding the store's write lock and await outside it
+	public Batch batch() {
+		return new Batch();
+	}
+
+	public CompletableFuture<Void> put(Todo todo) {
+		Batch batch = new Batch();
+		batch.put(todo);
+		return batch.commit();
+	}
+
+	public CompletableFuture<Void> delete(int id) {
+		Batch batch = new Batch();
+		batch.delete(id);
+		return batch.commit();
+	}
+
+	public static void await(CompletableFuture<Void> durable) {
+		try {
+			durable.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw new UncheckedIOException("Todo log write failed", (IOException) e.getCause());
+			}
+			throw e;
+		}
+	}
+
+	public boolean isSnapshotDue() {
+		return recordsSinceSnapshot.get() >= snapshotEvery;
+	}
+
+	// Starts a new segment; the caller captures the store in the same
+	// critical section so the snapshot matches the point of the roll
+	public synchronized Checkpoint roll() {
+		checkWritable();
+		int number = ++nextSegment;
+		Entry entry = new Entry(null, number);
+		queue.add(entry);
+		recordsSinceSnapshot.set(0);
+		return new Checkpoint(number, entry.done);
+	}
+
+	public void writeSnapshot(Checkpoint checkpoint, int lastId, Collection<Todo> todos) {
+		long start = System.nanoTime();
+		await(checkpoint.rolled);
+		Path temp = directory.resolve(SNAPSHOT + ".tmp");
+		try {
+			try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+				CheckedOutputStream checked = new CheckedOutputStream(file, new CRC32());
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16));
+				out.writeInt(SNAPSHOT_MAGIC);
+				out.writeInt(checkpoint.segment);
+				out.writeInt(lastId);
+				out.writeInt(todos.size());
+				for (Todo todo : todos) {
+					writeTodo(out, todo);
+				}
+				out.flush();
+				new DataOutputStream(file).writeInt((int) checked.getChecksum().getValue());
+				file.getFD().sync();
+			}
+			Files.move(temp, directory.resolve(SNAPSHOT), StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+			syncDirectory();
+			for (int number : segments()) {
+				if (number < checkpoint.segment) {
+					Files.delete(segmentPath(number));
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot write todo snapshot", e);
+		}
+		snapshots.increment();
+		lastSnapshotTodos = todos.size();
+		lastSnapshotMillis = (System.nanoTime() - start) / 1000000;
+	}
+
+	@PreDestroy
+	public void close() throws InterruptedException {
+		Thread thread = writer;
+		if (thread != null) {
+			writer = null;
+			queue.add(CLOSE);
+			thread.join();
+		}
+	}
+
+	private void checkWritable() {
+		if (writer == null) {
+			throw new IllegalStateException("Todo log is not open");
+		}
+		if (failure != null) {
+			throw new UncheckedIOException("Todo log is unavailable after a failed write", failure);
+		}
+	}
+
+	private void writeLoop() {
+		List<Entry> batch = new ArrayList<Entry>();
+		boolean closing = false;
+		while (!closing) {
+			try {
+				batch.add(queue.take());
+			} catch (InterruptedException e) {
+				closing = true;
+			}
+			queue.drainTo(batch, MAX_BATCH);
+			closing |= batch.remove(CLOSE);
+			try {
+				if (failure != null) {
+					throw failure;
+				}
+				write(batch);
+				if (closing) {
+					channel.close();
+				}
+				long now = System.nanoTime();
+				for (Entry entry : batch) {
+					long nanos = now - entry.enqueued;
+					commitNanos.add(nanos);
+					maxCommitNanos.accumulate(nanos);
+					entry.done.complete(null);
+				}
+			} catch (IOException e) {
+				if (failure == null) {
+					logger.error("Todo log write failed, refusing further writes", e);
+					failure = e;
+				}
+				for (Entry entry : batch) {
+					entry.done.completeExceptionally(e);
+				}
+			}
+			batch.clear();
+		}
+	}
+
+	// Everything up to a roll goes to the old segment and is forced before
+	// it is closed, so a completed roll means the old segment is final
+	private void write(List<Entry> batch) throws IOException {
+		List<ByteBuffer> pending = new ArrayList<ByteBuffer>(batch.size());
+		for (Entry entry : batch) {
+			if (entry.record != null) {
+				pending.add(entry.record);
+				continue;
+			}
+			flush(pending);
+			channel.close();
+			channel = openSegment(entry.rollTo);
+			segment = entry.rollTo;
+		}
+		flush(pending);
+	}
+
+	private void flush(List<ByteBuffer> pending) throws IOException {
+		if (pending.isEmpty()) {
+			return;
+		}
+		ByteBuffer[] buffers = pending.toArray(new ByteBuffer[pending.size()]);
+		long remaining = 0;
+		for (ByteBuffer buffer : buffers) {
+			remaining += buffer.remaining();
+		}
+		bytesWritten.add(remaining);
+		appends.add(buffers.length);
+		while (remaining > 0) {
+			remaining -= channel.write(buffers);
+		}
+		channel.force(false);
+		fsyncs.increment();
+		pending.clear();
+	}
+
+	private FileChannel openSegment(int number) throws IOException {
+		FileChannel opened = FileChannel.open(segmentPath(number), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		syncDirectory();
+		return opened;
+	}
+
+	private long replay(int number, Replay replay, boolean last) throws IOException {
+		Path path = segmentPath(number);
+		long records = 0;
+		long valid = 0;
+		long size = Files.size(path);
+		try (InputStream stream = new BufferedInputStream(Files.newInputStream(path), 1 << 16)) {
+			DataInputStream in = new DataInputStream(stream);
+			CRC32 crc = new CRC32();
+			byte[] payload = new byte[256];
+			while (valid < size) {
+				int length;
+				try {
+					length = in.readInt();
+					int checksum = in.readInt();
+					if (length <= 0 || length > MAX_RECORD) {
+						throw new EOFException("Bad record length " + length);
+					}
+					if (payload.length < length) {
+						payload = new byte[Math.max(length, payload.length * 2)];
+					}
+					in.readFully(payload, 0, length);
+					crc.reset();
+					crc.update(payload, 0, length);
+					if ((int) crc.getValue() != checksum) {
+						throw new EOFException("Bad record checksum");
+					}
+				} catch (EOFException e) {
+					if (!last) {
+						throw new IllegalStateException("Corrupt record in " + path + " at " + valid, e);
+					}
+					logger.warn("Truncating torn record in " + path + " at " + valid);
+					try (FileChannel truncate = FileChannel.open(path, StandardOpenOption.WRITE)) {
+						truncate.truncate(valid);
+						truncate.force(true);
+					}
+					break;
+				}
+				DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload, 0, length));
+				if (record.readByte() == PUT) {
+					replay.put(readTodo(record));
+				} else {
+					replay.delete(record.readInt());
+				}
+				valid += 8 + length;
+				records++;
+			}
+		}
+		return records;
+	}
+
+	private byte[] verifiedSnapshot(Path snapshot) throws IOException {
+		byte[] bytes = Files.readAllBytes(snapshot);
+		int length = bytes.length - 4;
+		if (length < 16 || ByteBuffer.wrap(bytes).getInt() != SNAPSHOT_MAGIC) {
+			throw new IllegalStateException("Not a todo snapshot: " + snapshot);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, length);
+		if ((int) crc.getValue() != ByteBuffer.wrap(bytes).getInt(length)) {
+			throw new IllegalStateException("Corrupt todo snapshot: " + snapshot);
+		}
+		return Arrays.copyOfRange(bytes, 4, length);
+	}
+
+	private List<Integer> segments() throws IOException {
+		List<Integer> numbers = new ArrayList<Integer>();
+		try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, "todos-*.log")) {
+			for (Path path : paths) {
+				String name = path.getFileName().toString();
+				numbers.add(Integer.parseInt(name.substring(6, name.length() - 4)));
+			}
+		}
+		Collections.sort(numbers);
+		return numbers;
+	}
+
+	private Path segmentPath(int number) {
+		return directory.resolve(String.format("todos-%08d.log", number));
+	}
+
+	// Makes file creation and renames durable; not every platform can open
+	// a directory, and there the rename is as durable as it gets
+	private void syncDirectory() {
+		try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+			dir.force(true);
+		} catch (IOException e) {
+			// not supported on this platform
+		}
+	}
+
+	private static void writeTodo(DataOutputStream out, Todo todo) throws IOException {
+		out.writeInt(todo.getId());
+		writeString(out, todo.getUser());
+		writeString(out, todo.getDesc());
+		out.writeLong(todo.getTargetDate() == null ? Long.MIN_VALUE : todo.getTargetDate().getTime());
+		out.writeBoolean(todo.isDone());
+	}
+
+	private static Todo readTodo(DataInputStream in) throws IOException {
+		int id = in.readInt();
+		String user = readString(in);
+		String desc = readString(in);
+		long targetDate = in.readLong();
+		return new Todo(id, user, desc, targetDate == Long.MIN_VALUE ? null : new Date(targetDate),
+				in.readBoolean());
+	}
+
+	// Not writeUTF, which is limited to 64 KB
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		// Records and snapshots are read from memory, where available is exact
+		if (length > in.available()) {
+			throw new EOFException("Bad string length " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@ManagedAttribute
+	public String getDirectory() {
+		return directory.toString();
+	}
+
+	@ManagedAttribute
+	public int getSegment() {
+		return segment;
+	}
+
+	@ManagedAttribute
+	public long getAppends() {
+		return appends.sum();
+	}
+
+	@ManagedAttribute
+	public long getFsyncs() {
+		return fsyncs.sum();
+	}
+
+	@ManagedAttribute
+	public double getAverageBatchSize() {
+		long syncs = fsyncs.sum();
+		return syncs == 0 ? 0 : (double) appends.sum() / syncs;
+	}
+
+	@ManagedAttribute
+	public long getBytesWritten() {
+		return bytesWritten.sum();
+	}
+
+	@ManagedAttribute
+	public double getAverageCommitMicros() {
+		long count = appends.sum();
+		return count == 0 ? 0 : commitNanos.sum() / 1000.0 / count;
+	}
+
+	@ManagedAttribute
+	public long getMaxCommitMicros() {
+		return maxCommitNanos.get() / 1000;
+	}
+
+	@ManagedAttribute
+	public long getRecordsSinceSnapshot() {
+		return recordsSinceSnapshot.get();
+	}
+
+	@ManagedAttribute
+	public long getSnapshots() {
+		return snapshots.sum();
+	}
+
+	@ManagedAttribute
+	public long getLastSnapshotMillis() {
+		return lastSnapshotMillis;
+	}
+
+	@ManagedAttribute
+	public int getLastSnapshotTodos() {
+		return lastSnapshotTodos;
+	}
+
+	@ManagedAttribute
+	public long getRecoveryMillis() {
+		return recoveryMillis;
+	}
+
+	@ManagedAttribute
+	public long getRecoveredRecords() {
+		return recoveredRecords;
+	}
+
+}
@@ -0,0 +1,31 @@
+package com.in28minutes.todo;
+
+import java.util.List;
+
+// One page of a user's todos with the cursors to fetch the pages either
+// side of it; a cursor is null when there is nothing in that direction
+public class TodoPage {
+
+	private final List<Todo> todos;
+	private final String next;
+	private final String previous;
+
+	public TodoPage(List<Todo> todos, String next, String previous) {
+		this.todos = todos;
+		this.next = next;
+		this.previous = previous;
+	}
+
+	public List<Todo> getTodos() {
+		return todos;
+	}
+
+	public String getNext() {
+		return next;
+	}
+
+	public String getPrevious() {
+		return previous;
+	}
+
+}
@@ -1,25 +1,168 @@
 package com.in28minutes.todo;
 
+import java.io.IOException;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
+// Every endpoint works on the logged in user's todos. The POST endpoints
+// are covered by Spring Security's CSRF protection like the forms: clients
+// send the session's token in the header named by the _csrf_header meta tag
+// of the pages, with the value of the _csrf meta tag.
 @RestController
 public class TodoRestController {
+
+	static final String NDJSON = "application/x-ndjson";
+
+	// Same defaults as the message converter, without a flush per todo
+	private final ObjectWriter writer = Jackson2ObjectMapperBuilder.json().build()
+			.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+	private final Validator validator = Validation
+			.buildDefaultValidatorFactory().getValidator();
+
 	@Autowired
 	TodoService service;
 
+	@Autowired
+	TodoEtags etags;
+
 	@RequestMapping(value = "/todos")
-	public List<Todo> retrieveAllTodos() {
-		return service.retrieveTodos("in28Minutes");
+	public TodoPage retrieveAllTodos(ServletWebRequest request, Principal principal,
+			@RequestParam(required = false) String after,
+			@RequestParam(required = false) String before,
+			@RequestParam(defaultValue = "0") int size) {
+		String user = principal.getName();
+		if (etags.checkNotModified(request, "todos", etags.etag(service.getEpoch(),
+				user, service.retrieveUserVersion(user), "json"))) {
+			return null;
+		}
+		return service.retrieveTodos(user, after, before, size);
+	}
+
+	// One todo per line, written as the store is iterated so memory use does
+	// not depend on the size of the list
+	@RequestMapping(value = "/todos", params = "stream=true")
+	public void streamAllTodos(ServletWebRequest request, Principal principal,
+			HttpServletResponse response) throws IOException {
+		String user = principal.getName();
+		if (etags.checkNotModified(request, "todos-stream", etags.etag(
+				service.getEpoch(), user, service.retrieveUserVersion(user), "ndjson"))) {
+			return;
+		}
+		response.setContentType(NDJSON);
+		response.setCharacterEncoding("UTF-8");
+		try (JsonGenerator generator = writer.getFactory().createGenerator(
+				response.getOutputStream())) {
+			generator.setRootValueSeparator(null);
+			for (Todo todo : service.viewTodos(user)) {
+				writer.writeValue(generator, todo);
+				generator.writeRaw('\n');
+			}
+		}
+	}
+
+	@RequestMapping(value = "/todos", produces = NDJSON)
+	public void streamAllTodosForNdjson(ServletWebRequest request, Principal principal,
+			HttpServletResponse response) throws IOException {
+		streamAllTodos(request, principal, response);
 	}
 
+	// Ranked matches among the user's todos
+	@RequestMapping(value = "/todos/search")
+	public List<Todo> searchTodos(Principal principal, @RequestParam String q,
+			@RequestParam(defaultValue = "0") int limit) {
+		return service.searchTodos(principal.getName(), q, limit);
+	}
+
+	// 404 for an unknown id or another user's todo, before any ETag is
+	// issued for it
 	@RequestMapping(value = "/todos/{id}")
-	public Todo retrieveTodo(@PathVariable int id) {
-		return service.retrieveTodo(id);
+	public ResponseEntity<Todo> retrieveTodo(ServletWebRequest request, Principal principal,
+			@PathVariable int id) {
+		long version = service.retrieveTodoVersion(id);
+		Todo todo = service.retrieveTodo(id);
+		if (version == 0 || todo == null || !todo.getUser().equals(principal.getName())) {
+			return new ResponseEntity<Todo>(HttpStatus.NOT_FOUND);
+		}
+		if (etags.checkNotModified(request, "todo", etags.etag(service.getEpoch(),
+				Integer.toString(id), version, "json"))) {
+			return null;
+		}
+		return ResponseEntity.ok(todo);
+	}
+
+	@RequestMapping(value = "/todos/batch/add", method = RequestMethod.POST)
+	public List<TodoBatchResult> addTodos(Principal principal, @RequestBody List<Todo> todos) {
+		return applyValid(todos, valid -> service.addTodos(principal.getName(), valid));
+	}
+
+	@RequestMapping(value = "/todos/batch/update", method = RequestMethod.POST)
+	public List<TodoBatchResult> updateTodos(Principal principal, @RequestBody List<Todo> todos) {
+		return applyValid(todos, valid -> service.updateTodos(principal.getName(), valid));
+	}
+
+	@RequestMapping(value = "/todos/batch/delete", method = RequestMethod.POST)
+	public List<TodoBatchResult> deleteTodos(Principal principal, @RequestBody List<Integer> ids) {
+		return service.deleteTodos(principal.getName(), ids);
+	}
+
+	// Invalid items are reported in place and the rest applied as one batch
+	private List<TodoBatchResult> applyValid(List<Todo> todos,
+			Function<List<Todo>, List<TodoBatchResult>> apply) {
+		TodoService.checkBatchSize(todos.size());
+		TodoBatchResult[] results = new TodoBatchResult[todos.size()];
+		List<Todo> valid = new ArrayList<Todo>(todos.size());
+		List<Integer> positions = new ArrayList<Integer>(todos.size());
+		for (int i = 0; i < todos.size(); i++) {
+			Todo todo = todos.get(i);
+			Set<ConstraintViolation<Todo>> violations = validator.validate(todo);
+			if (violations.isEmpty()) {
+				valid.add(todo);
+				positions.add(i);
+			} else {
+				results[i] = new TodoBatchResult(todo.getId(),
+						TodoBatchResult.Status.INVALID,
+						violations.iterator().next().getMessage());
+			}
+		}
+		List<TodoBatchResult> applied = apply.apply(valid);
+		for (int i = 0; i < applied.size(); i++) {
+			results[positions.get(i)] = applied.get(i);
+		}
+		return Arrays.asList(results);
+	}
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	public String handleBadRequest(IllegalArgumentException ex) {
+		return ex.getMessage();
 	}
 
 }
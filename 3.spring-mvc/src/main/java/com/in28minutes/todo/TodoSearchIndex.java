@@ -0,0 +1,215 @@
+package com.in28minutes.todo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Inverted index over todo descriptions, one per user so a search only ever
+// touches the user's own postings. Words are runs of letters and digits,
+// lowercased. Every query word has to match a word of the description
+// exactly or as a prefix; an exact match scores higher and ties go to the
+// newer todo.
+//
+// A search walks the postings of its most selective word, exact matches
+// newest first, and stops as soon as nothing left can enter the top results,
+// so the common case reads little more than the page it returns. Writers
+// are serialized by the TodoService write lock; readers run alongside them
+// and may briefly see a todo that is being removed, which the service
+// filters out.
+class TodoSearchIndex {
+
+	private static final int EXACT = 2;
+	private static final int PREFIX = 1;
+
+	// Ids of the todos containing a word; the size is kept alongside because
+	// counting a skip list is linear
+	private static class Posting {
+
+		final ConcurrentSkipListSet<Integer> ids = new ConcurrentSkipListSet<Integer>();
+		volatile int size;
+
+	}
+
+	private final Map<String, NavigableMap<String, Posting>> postingsByUser = new ConcurrentHashMap<String, NavigableMap<String, Posting>>();
+	private final Map<Integer, String[]> wordsById = new ConcurrentHashMap<Integer, String[]>();
+
+	// Callers hold the write lock
+	void add(Todo todo) {
+		String[] words = tokenize(todo.getDesc());
+		wordsById.put(todo.getId(), words);
+		NavigableMap<String, Posting> postings = postingsByUser.get(todo.getUser());
+		if (postings == null) {
+			postings = new ConcurrentSkipListMap<String, Posting>();
+			postingsByUser.put(todo.getUser(), postings);
+		}
+		for (String word : words) {
+			Posting posting = postings.get(word);
+			if (posting == null) {
+				posting = new Posting();
+				postings.put(word, posting);
+			}
+			if (posting.ids.add(todo.getId())) {
+				posting.size++;
+			}
+		}
+	}
+
+	// Callers hold the write lock
+	void remove(Todo todo) {
+		String[] words = wordsById.remove(todo.getId());
+		NavigableMap<String, Posting> postings = postingsByUser.get(todo.getUser());
+		if (words == null || postings == null) {
+			return;
+		}
+		for (String word : words) {
+			Posting posting = postings.get(word);
+			if (posting != null && posting.ids.remove(todo.getId())) {
+				if (--posting.size == 0) {
+					postings.remove(word);
+				}
+			}
+		}
+		if (postings.isEmpty()) {
+			postingsByUser.remove(todo.getUser());
+		}
+	}
+
+	// Ids of the best matches, best first
+	List<Integer> search(String user, String query, int limit) {
+		String[] terms = tokenize(query);
+		NavigableMap<String, Posting> postings = postingsByUser.get(user);
+		if (terms.length == 0 || postings == null || limit <= 0) {
+			return Collections.emptyList();
+		}
+		String driver = null;
+		long fewest = Long.MAX_VALUE;
+		for (String term : terms) {
+			long count = countUpTo(postings, term, fewest);
+			if (count < fewest) {
+				fewest = count;
+				driver = term;
+			}
+		}
+		if (fewest == 0) {
+			return Collections.emptyList();
+		}
+		int best = EXACT * terms.length;
+		// score in the high half and id in the low half, so the head of the
+		// queue is the weakest of the results so far
+		PriorityQueue<Long> top = new PriorityQueue<Long>(limit + 1);
+		Posting exact = postings.get(driver);
+		if (exact != null) {
+			for (int id : exact.ids.descendingSet()) {
+				if (top.size() == limit && top.peek() >= rank(best, id)) {
+					break;
+				}
+				offer(top, limit, score(id, terms), id);
+			}
+		}
+		if (top.size() < limit || top.peek() < rank(best - EXACT + PREFIX, Integer.MAX_VALUE)) {
+			Set<Integer> seen = new HashSet<Integer>();
+			for (Posting posting : prefixed(postings, driver, false).values()) {
+				for (int id : posting.ids.descendingSet()) {
+					if (top.size() == limit && top.peek() >= rank(best - EXACT + PREFIX, id)) {
+						break;
+					}
+					if ((exact == null || !exact.ids.contains(id)) && seen.add(id)) {
+						offer(top, limit, score(id, terms), id);
+					}
+				}
+			}
+		}
+		List<Integer> ids = new ArrayList<Integer>(top.size());
+		while (!top.isEmpty()) {
+			ids.add((int) top.poll().longValue());
+		}
+		Collections.reverse(ids);
+		return ids;
+	}
+
+	static String[] tokenize(String text) {
+		if (text == null) {
+			return new String[0];
+		}
+		Set<String> words = new LinkedHashSet<String>();
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+			if (inWord && start < 0) {
+				start = i;
+			} else if (!inWord && start >= 0) {
+				words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+				start = -1;
+			}
+		}
+		return words.toArray(new String[words.size()]);
+	}
+
+	private static void offer(PriorityQueue<Long> top, int limit, int score, int id) {
+		if (score < 0) {
+			return;
+		}
+		top.add(rank(score, id));
+		if (top.size() > limit) {
+			top.poll();
+		}
+	}
+
+	private static long rank(int score, int id) {
+		return ((long) score << 32) | (id & 0xFFFFFFFFL);
+	}
+
+	// -1 when a term matches none of the todo's words
+	private int score(int id, String[] terms) {
+		String[] words = wordsById.get(id);
+		if (words == null) {
+			return -1;
+		}
+		int score = 0;
+		for (String term : terms) {
+			int match = 0;
+			for (String word : words) {
+				if (word.equals(term)) {
+					match = EXACT;
+					break;
+				}
+				if (word.startsWith(term)) {
+					match = PREFIX;
+				}
+			}
+			if (match == 0) {
+				return -1;
+			}
+			score += match;
+		}
+		return score;
+	}
+
+	// Number of postings a term matches, counting no further than cap
+	private static long countUpTo(NavigableMap<String, Posting> postings, String term, long cap) {
+		long count = 0;
+		for (Posting posting : prefixed(postings, term, true).values()) {
+			count += posting.size;
+			if (count >= cap) {
+				break;
+			}
+		}
+		return count;
+	}
+
+	private static NavigableMap<String, Posting> prefixed(NavigableMap<String, Posting> postings,
+			String prefix, boolean inclusive) {
+		return postings.subMap(prefix, inclusive, prefix + Character.MAX_VALUE, false);
+	}
+
+}
@@ -1,60 +1,562 @@
 package com.in28minutes.todo;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.Deque;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+// In memory store with a primary index by id, a per-user index ordered by
+// target date and id, which pages are read from by cursor, and a per-user
+// full text index over descriptions. Reads go straight to the concurrent
+// maps without locking; writes take one lock so the indexes always change
+// together, even when an update moves a todo to another user or date.
+// Returned todos are the stored instances and must not be modified;
+// updateTodo stores a copy of what it is given.
+//
+// Every change is appended to the TodoLog while the write lock is held, so
+// the log has the same order as the store, and is awaited after the lock is
+// released, so concurrent writers share one fsync. The records are built
+// and handed to the log before the store changes, so a todo the log cannot
+// take never shows up in memory. A write that then fails to reach the disk
+// is taken back out of memory; the log refuses everything after a failed
+// write, so those are always the newest changes. Once enough records have
+// accumulated a background thread snapshots the store and the log drops the
+// segments the snapshot covers.
+//
+// Each user has a version that goes up with every change to their list and
+// each todo the store wide change count at its last write, for conditional
+// GETs. Versions live in memory only, so they come with an epoch that is
+// new for every instance.
 @Service
 public class TodoService {
-	private static List<Todo> todos = new ArrayList<Todo>();
-	private static int todoCount = 3;
 
-	static {
-		todos.add(new Todo(1, "in28Minutes", "Learn Spring MVC", new Date(),
-				false));
-		todos.add(new Todo(2, "in28Minutes", "Learn Struts", new Date(), false));
-		todos.add(new Todo(3, "in28Minutes", "Learn Hibernate", new Date(),
-				false));
+	public static final int DEFAULT_PAGE_SIZE = 50;
+	public static final int MAX_PAGE_SIZE = 1000;
+	public static final int MAX_BATCH_SIZE = 10000;
+	public static final int DEFAULT_SEARCH_LIMIT = 20;
+	public static final int MAX_SEARCH_LIMIT = 100;
+
+	private static final Log logger = LogFactory.getLog(TodoService.class);
+
+	private final AtomicInteger todoCount = new AtomicInteger();
+	private final Map<Integer, Todo> todosById = new ConcurrentHashMap<Integer, Todo>();
+	private final Map<String, NavigableMap<TodoCursor, Todo>> todosByUser = new ConcurrentHashMap<String, NavigableMap<TodoCursor, Todo>>();
+	private final Map<String, Long> userVersions = new ConcurrentHashMap<String, Long>();
+	private final Map<Integer, Long> todoVersions = new ConcurrentHashMap<Integer, Long>();
+	private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+	// Guarded by the write lock
+	private long changeCount;
+	private final TodoSearchIndex searchIndex = new TodoSearchIndex();
+	private final ReentrantLock writeLock = new ReentrantLock();
+	// Guarded by the write lock, oldest first
+	private final Deque<PendingWrite> pendingWrites = new ArrayDeque<PendingWrite>();
+	private final TodoLog log;
+	private final AtomicBoolean snapshotPending = new AtomicBoolean();
+	private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "todo-snapshot");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// Changes handed to the log but not known to be durable yet, with the
+	// todos they replaced (null when there was none)
+	private static class PendingWrite {
+
+		final CompletableFuture<Void> durable;
+		final List<Integer> ids = new ArrayList<Integer>();
+		final List<Todo> previous = new ArrayList<Todo>();
+
+		PendingWrite(CompletableFuture<Void> durable) {
+			this.durable = durable;
+		}
+
+		void changed(int id, Todo before) {
+			ids.add(id);
+			previous.add(before);
+		}
+
+	}
+
+	@Autowired
+	public TodoService(TodoLog log) {
+		this.log = log;
+		int lastId = log.recover(new TodoLog.Replay() {
+
+			@Override
+			public void put(Todo todo) {
+				Todo previous = todosById.get(todo.getId());
+				if (previous != null) {
+					unindex(previous);
+				}
+				store(todo);
+				if (todo.getId() > todoCount.get()) {
+					todoCount.set(todo.getId());
+				}
+			}
+
+			@Override
+			public void delete(int id) {
+				remove(id);
+			}
+
+		});
+		if (lastId > todoCount.get()) {
+			todoCount.set(lastId);
+		}
+		if (lastId < 0) {
+			addTodo("in28Minutes", "Learn Spring MVC", new Date(), false);
+			addTodo("in28Minutes", "Learn Struts", new Date(), false);
+			addTodo("in28Minutes", "Learn Hibernate", new Date(), false);
+		}
 	}
 
-	public void addTodo(String name, String desc, Date targetDate,
+	public Todo addTodo(String name, String desc, Date targetDate,
 			boolean isDone) {
-		todos.add(new Todo(++todoCount, name, desc, targetDate, isDone));
+		Todo todo = new Todo(todoCount.incrementAndGet(), name, desc,
+				targetDate, isDone);
+		PendingWrite write;
+		writeLock.lock();
+		try {
+			write = pending(log.put(todo));
+			store(todo);
+			write.changed(todo.getId(), null);
+		} finally {
+			writeLock.unlock();
+		}
+		commit(write);
+		return todo;
 	}
 
-	public void deleteTodo(int id) {
-		Iterator<Todo> iterator = todos.iterator();
-		while (iterator.hasNext()) {
-			Todo todo = iterator.next();
-			if (todo.getId() == id) {
-				iterator.remove();
+	// Returns false when there was no todo with this id
+	public boolean deleteTodo(int id) {
+		PendingWrite write;
+		writeLock.lock();
+		try {
+			if (!todosById.containsKey(id)) {
+				return false;
 			}
+			write = pending(log.delete(id));
+			write.changed(id, remove(id));
+		} finally {
+			writeLock.unlock();
 		}
+		commit(write);
+		return true;
 	}
 
-	public List<Todo> retrieveTodos(String user) {
-		List<Todo> filteredTodos = new ArrayList<Todo>();
-		for (Todo todo : todos) {
-			if (todo.getUser().equals(user))
-				filteredTodos.add(todo);
+	// Live view of the user's list in cursor order for streaming without a
+	// copy; iteration is weakly consistent with concurrent writes
+	public Collection<Todo> viewTodos(String user) {
+		NavigableMap<TodoCursor, Todo> todos = todosByUser.get(user);
+		if (todos == null) {
+			return Collections.emptyList();
 		}
-		return filteredTodos;
+		return Collections.unmodifiableCollection(todos.values());
+	}
+
+	// Takes the cursors as handed out by TodoPage; before wins if both are set
+	public TodoPage retrieveTodos(String user, String after, String before, int size) {
+		if (before != null && !before.isEmpty()) {
+			return retrieveTodosBefore(user, TodoCursor.parse(before), size);
+		}
+		return retrieveTodosAfter(user, after == null || after.isEmpty() ? null : TodoCursor.parse(after), size);
+	}
+
+	// First page when after is null, otherwise the todos following it
+	public TodoPage retrieveTodosAfter(String user, TodoCursor after, int size) {
+		NavigableMap<TodoCursor, Todo> todos = todosByUser.get(user);
+		if (todos == null) {
+			return new TodoPage(Collections.<Todo> emptyList(), null, null);
+		}
+		NavigableMap<TodoCursor, Todo> tail = after == null ? todos : todos.tailMap(after, false);
+		List<Todo> page = take(tail, pageSize(size));
+		if (page.isEmpty()) {
+			return new TodoPage(page, null, null);
+		}
+		String next = null;
+		if (page.size() > pageSize(size)) {
+			page.remove(page.size() - 1);
+			next = TodoCursor.of(page.get(page.size() - 1)).toString();
+		}
+		TodoCursor first = TodoCursor.of(page.get(0));
+		String previous = todos.lowerKey(first) == null ? null : first.toString();
+		return new TodoPage(page, next, previous);
+	}
+
+	// The todos immediately preceding before, in list order
+	public TodoPage retrieveTodosBefore(String user, TodoCursor before, int size) {
+		NavigableMap<TodoCursor, Todo> todos = todosByUser.get(user);
+		if (todos == null) {
+			return new TodoPage(Collections.<Todo> emptyList(), null, null);
+		}
+		List<Todo> page = take(todos.headMap(before, false).descendingMap(), pageSize(size));
+		if (page.isEmpty()) {
+			return new TodoPage(page, null, null);
+		}
+		String previous = null;
+		if (page.size() > pageSize(size)) {
+			page.remove(page.size() - 1);
+			previous = TodoCursor.of(page.get(page.size() - 1)).toString();
+		}
+		Collections.reverse(page);
+		TodoCursor last = TodoCursor.of(page.get(page.size() - 1));
+		String next = todos.higherKey(last) == null ? null : last.toString();
+		return new TodoPage(page, next, previous);
+	}
+
+	// Todos of the user whose descriptions match every word of the query,
+	// whole or as a prefix, best match first
+	public List<Todo> searchTodos(String user, String query, int limit) {
+		int size = limit <= 0 ? DEFAULT_SEARCH_LIMIT : Math.min(limit, MAX_SEARCH_LIMIT);
+		List<Todo> todos = new ArrayList<Todo>(size);
+		for (int id : searchIndex.search(user, query, size)) {
+			Todo todo = todosById.get(id);
+			if (todo != null && todo.getUser().equals(user)) {
+				todos.add(todo);
+			}
+		}
+		return todos;
+	}
+
+	public String getEpoch() {
+		return epoch;
+	}
+
+	public long retrieveUserVersion(String user) {
+		Long version = userVersions.get(user);
+		return version == null ? 0 : version;
+	}
+
+	// 0 when there is no todo with this id
+	public long retrieveTodoVersion(int id) {
+		Long version = todoVersions.get(id);
+		return version == null ? 0 : version;
 	}
 
 	public Todo retrieveTodo(int id) {
+		return todosById.get(id);
+	}
+
+	// Replaces the todo with the same id; returns false when there is none
+	public boolean updateTodo(Todo todo) {
+		Todo copy = new Todo(todo.getId(), todo.getUser(), todo.getDesc(),
+				todo.getTargetDate(), todo.isDone());
+		PendingWrite write;
+		writeLock.lock();
+		try {
+			Todo previous = todosById.get(copy.getId());
+			if (previous == null) {
+				return false;
+			}
+			write = pending(log.put(copy));
+			replace(copy);
+			write.changed(copy.getId(), previous);
+		} finally {
+			writeLock.unlock();
+		}
+		commit(write);
+		return true;
+	}
+
+	// The batch methods apply every item under one lock acquisition and
+	// append them to the log as one write. They only touch todos of the
+	// given user; a todo that is missing or belongs to someone else is
+	// NOT_FOUND, so the answer does not tell which. Items are independent: a
+	// failed item does not stop the others, and results line up with the
+	// input.
+	public List<TodoBatchResult> addTodos(String user, List<Todo> todos) {
+		checkBatchSize(todos.size());
+		List<TodoBatchResult> results = new ArrayList<TodoBatchResult>(todos.size());
+		List<Todo> added = new ArrayList<Todo>(todos.size());
+		TodoLog.Batch batch = log.batch();
 		for (Todo todo : todos) {
-			if (todo.getId() == id)
-				return todo;
+			Todo copy = new Todo(todoCount.incrementAndGet(), user,
+					todo.getDesc(), todo.getTargetDate(), todo.isDone());
+			batch.put(copy);
+			added.add(copy);
+			results.add(new TodoBatchResult(copy.getId(), TodoBatchResult.Status.CREATED));
+		}
+		if (batch.isEmpty()) {
+			return results;
+		}
+		PendingWrite write;
+		writeLock.lock();
+		try {
+			write = pending(batch.commit());
+			for (Todo todo : added) {
+				store(todo);
+				write.changed(todo.getId(), null);
+			}
+		} finally {
+			writeLock.unlock();
 		}
-		return null;
+		commit(write);
+		return results;
 	}
 
-	public void updateTodo(Todo todo) {
-		todos.remove(todo);
-		todos.add(todo);
+	public List<TodoBatchResult> updateTodos(String user, List<Todo> todos) {
+		checkBatchSize(todos.size());
+		List<TodoBatchResult> results = new ArrayList<TodoBatchResult>(todos.size());
+		List<Todo> updated = new ArrayList<Todo>(todos.size());
+		TodoLog.Batch batch = log.batch();
+		PendingWrite write;
+		writeLock.lock();
+		try {
+			// Decides and records every item before any of them is applied;
+			// an item repeated in the batch is applied twice, like in the log
+			for (Todo todo : todos) {
+				Todo copy = new Todo(todo.getId(), user, todo.getDesc(),
+						todo.getTargetDate(), todo.isDone());
+				if (isOwnedBy(copy.getId(), user)) {
+					batch.put(copy);
+					updated.add(copy);
+					results.add(new TodoBatchResult(copy.getId(), TodoBatchResult.Status.UPDATED));
+				} else {
+					results.add(new TodoBatchResult(copy.getId(), TodoBatchResult.Status.NOT_FOUND));
+				}
+			}
+			if (batch.isEmpty()) {
+				return results;
+			}
+			write = pending(batch.commit());
+			for (Todo copy : updated) {
+				write.changed(copy.getId(), todosById.get(copy.getId()));
+				replace(copy);
+			}
+		} finally {
+			writeLock.unlock();
+		}
+		commit(write);
+		return results;
+	}
+
+	public List<TodoBatchResult> deleteTodos(String user, List<Integer> ids) {
+		checkBatchSize(ids.size());
+		if (ids.contains(null)) {
+			throw new IllegalArgumentException("Todo ids must not be null");
+		}
+		List<TodoBatchResult> results = new ArrayList<TodoBatchResult>(ids.size());
+		Set<Integer> deleted = new LinkedHashSet<Integer>();
+		TodoLog.Batch batch = log.batch();
+		PendingWrite write;
+		writeLock.lock();
+		try {
+			for (int id : ids) {
+				if (isOwnedBy(id, user) && deleted.add(id)) {
+					batch.delete(id);
+					results.add(new TodoBatchResult(id, TodoBatchResult.Status.DELETED));
+				} else {
+					results.add(new TodoBatchResult(id, TodoBatchResult.Status.NOT_FOUND));
+				}
+			}
+			if (batch.isEmpty()) {
+				return results;
+			}
+			write = pending(batch.commit());
+			for (int id : deleted) {
+				write.changed(id, remove(id));
+			}
+		} finally {
+			writeLock.unlock();
+		}
+		commit(write);
+		return results;
+	}
+
+	@PreDestroy
+	public void close() throws InterruptedException {
+		snapshotter.shutdown();
+		snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+		try {
+			snapshot();
+		} catch (RuntimeException e) {
+			logger.warn("Final todo snapshot failed, the log will be replayed instead", e);
+		}
+	}
+
+	// Callers hold the write lock and have handed the records to the log;
+	// writes already known to be durable are forgotten on the way
+	private PendingWrite pending(CompletableFuture<Void> durable) {
+		while (!pendingWrites.isEmpty() && pendingWrites.peekFirst().durable.isDone()
+				&& !pendingWrites.peekFirst().durable.isCompletedExceptionally()) {
+			pendingWrites.pollFirst();
+		}
+		PendingWrite write = new PendingWrite(durable);
+		pendingWrites.addLast(write);
+		return write;
+	}
+
+	private void commit(PendingWrite write) {
+		try {
+			TodoLog.await(write.durable);
+		} catch (RuntimeException e) {
+			rollBack();
+			throw e;
+		}
+		if (log.isSnapshotDue() && snapshotPending.compareAndSet(false, true)) {
+			snapshotter.execute(() -> {
+				try {
+					snapshot();
+				} catch (RuntimeException e) {
+					logger.error("Todo snapshot failed", e);
+				} finally {
+					snapshotPending.set(false);
+				}
+			});
+		}
+	}
+
+	// Undoes the failed writes newest first, which leaves the store as the
+	// log has it. The log writes in order and fails everything after a
+	// failed write, so the newest write that made it ends the search.
+	private void rollBack() {
+		writeLock.lock();
+		try {
+			while (!pendingWrites.isEmpty()) {
+				PendingWrite write = pendingWrites.peekLast();
+				try {
+					write.durable.join();
+					return;
+				} catch (CompletionException e) {
+					pendingWrites.pollLast();
+				}
+				for (int i = write.ids.size() - 1; i >= 0; i--) {
+					restore(write.ids.get(i), write.previous.get(i));
+				}
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	// Callers hold the write lock
+	private void restore(int id, Todo previous) {
+		remove(id);
+		if (previous != null) {
+			store(previous);
+		}
+	}
+
+	// Copies the store and rolls the log in one critical section, then
+	// writes the copy without holding up writers
+	private void snapshot() {
+		List<Todo> todos;
+		int lastId;
+		TodoLog.Checkpoint checkpoint;
+		writeLock.lock();
+		try {
+			todos = new ArrayList<Todo>(todosById.values());
+			lastId = todoCount.get();
+			checkpoint = log.roll();
+		} finally {
+			writeLock.unlock();
+		}
+		log.writeSnapshot(checkpoint, lastId, todos);
+	}
+
+	// Also called before a batch is validated, so the limit covers the items
+	// the validation drops
+	static void checkBatchSize(int size) {
+		if (size > MAX_BATCH_SIZE) {
+			throw new IllegalArgumentException("At most " + MAX_BATCH_SIZE
+					+ " todos per batch, got " + size);
+		}
+	}
+
+	// Callers hold the write lock
+	private boolean isOwnedBy(int id, String user) {
+		Todo todo = todosById.get(id);
+		return todo != null && todo.getUser().equals(user);
+	}
+
+	// Callers hold the write lock
+	private boolean replace(Todo todo) {
+		Todo previous = todosById.get(todo.getId());
+		if (previous == null) {
+			return false;
+		}
+		unindex(previous);
+		store(todo);
+		return true;
+	}
+
+	// Callers hold the write lock
+	private Todo remove(int id) {
+		Todo todo = todosById.remove(id);
+		if (todo != null) {
+			unindex(todo);
+		}
+		return todo;
+	}
+
+	// Reads one more than the page size so callers can tell if there is more
+	private static List<Todo> take(NavigableMap<TodoCursor, Todo> todos, int size) {
+		List<Todo> page = new ArrayList<Todo>(size + 1);
+		for (Todo todo : todos.values()) {
+			page.add(todo);
+			if (page.size() > size) {
+				break;
+			}
+		}
+		return page;
+	}
+
+	private static int pageSize(int size) {
+		return size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+	}
+
+	// Callers hold the write lock
+	private void store(Todo todo) {
+		todosById.put(todo.getId(), todo);
+		NavigableMap<TodoCursor, Todo> todos = todosByUser.get(todo.getUser());
+		if (todos == null) {
+			todos = new ConcurrentSkipListMap<TodoCursor, Todo>();
+			todosByUser.put(todo.getUser(), todos);
+		}
+		todos.put(TodoCursor.of(todo), todo);
+		searchIndex.add(todo);
+		bumpVersion(todo.getUser());
+		todoVersions.put(todo.getId(), ++changeCount);
+	}
+
+	private void bumpVersion(String user) {
+		Long version = userVersions.get(user);
+		userVersions.put(user, version == null ? 1 : version + 1);
+	}
+
+	private void unindex(Todo todo) {
+		NavigableMap<TodoCursor, Todo> todos = todosByUser.get(todo.getUser());
+		todos.remove(TodoCursor.of(todo));
+		searchIndex.remove(todo);
+		todoVersions.remove(todo.getId());
+		bumpVersion(todo.getUser());
+		if (todos.isEmpty()) {
+			todosByUser.remove(todo.getUser());
+		}
 	}
 
 }
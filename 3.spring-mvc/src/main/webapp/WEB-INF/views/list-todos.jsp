@@ -27,6 +27,28 @@
 			</c:forEach>
 		</tbody>
 	</table>
+	<ul class="pager">
+		<c:if test="${not empty page.previous}">
+			<c:url var="previousUrl" value="/list-todos">
+				<c:param name="before" value="${page.previous}"/>
+				<c:if test="${not empty param.size}">
+					<c:param name="size" value="${param.size}"/>
+				</c:if>
+			</c:url>
+			<li class="previous"><a href="${previousUrl}">
+				<spring:message code="todo.previous"/></a></li>
+		</c:if>
+		<c:if test="${not empty page.next}">
+			<c:url var="nextUrl" value="/list-todos">
+				<c:param name="after" value="${page.next}"/>
+				<c:if test="${not empty param.size}">
+					<c:param name="size" value="${param.size}"/>
+				</c:if>
+			</c:url>
+			<li class="next"><a href="${nextUrl}">
+				<spring:message code="todo.next"/></a></li>
+		</c:if>
+	</ul>
 	<div>
 		<a class="btn btn-success" href="/add-todo">Add</a>
 	</div>
@@ -0,0 +1,72 @@
+package com.in28minutes.todo;
+
+import static org.junit.Assert.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.security.web.csrf.DefaultCsrfToken;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.view.InternalResourceViewResolver;
+
+public class TodoControllerTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private TodoLog log;
+	private TodoService service;
+	private MockMvc mvc;
+
+	@Before
+	public void start() {
+		log = new TodoLog(folder.getRoot().getPath(), 10000);
+		service = new TodoService(log);
+		TodoController controller = new TodoController();
+		controller.service = service;
+		controller.etags = new TodoEtags();
+		InternalResourceViewResolver views = new InternalResourceViewResolver();
+		views.setPrefix("/WEB-INF/views/");
+		views.setSuffix(".jsp");
+		mvc = MockMvcBuilders.standaloneSetup(controller).setViewResolvers(views).build();
+		SecurityContextHolder.getContext().setAuthentication(
+				new UsernamePasswordAuthenticationToken("in28Minutes", "dummy"));
+	}
+
+	@After
+	public void close() throws InterruptedException {
+		SecurityContextHolder.clearContext();
+		service.close();
+		log.close();
+	}
+
+	@Test
+	public void aNewCsrfTokenChangesThePageEtag() throws Exception {
+		String etag = mvc.perform(listTodos("first"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader("ETag");
+		mvc.perform(listTodos("first").header("If-None-Match", etag))
+				.andExpect(status().isNotModified());
+
+		// As after a re-login: same todos, new session and token
+		String renewed = mvc.perform(listTodos("second").header("If-None-Match", etag))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader("ETag");
+		assertNotEquals(etag, renewed);
+	}
+
+	private static MockHttpServletRequestBuilder listTodos(String csrfToken) {
+		return get("/list-todos").requestAttr(CsrfToken.class.getName(),
+				new DefaultCsrfToken("X-CSRF-TOKEN", "_csrf", csrfToken));
+	}
+
+}
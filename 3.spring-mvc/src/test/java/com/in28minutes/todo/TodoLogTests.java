@@ -0,0 +1,134 @@
+package com.in28minutes.todo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TodoLogTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final List<TodoLog> logs = new ArrayList<TodoLog>();
+
+	@After
+	public void closeLogs() throws InterruptedException {
+		for (TodoLog log : logs) {
+			log.close();
+		}
+	}
+
+	@Test
+	public void replaysEverythingAfterAnUncleanStop() {
+		TodoLog log = open(10000);
+		assertEquals(-1, log.recover(new Recorder()));
+		TodoLog.await(log.put(todo(1, "Learn Spring")));
+		TodoLog.await(log.put(todo(2, "Learn Struts")));
+		TodoLog.await(log.put(todo(1, "Learn Spring MVC")));
+		TodoLog.await(log.delete(2));
+		// No close: the writer is left as a crash would leave it
+
+		Recorder recovered = new Recorder();
+		assertTrue(open(10000).recover(recovered) >= 0);
+		assertEquals(Arrays.asList(1), new ArrayList<Integer>(recovered.todos.keySet()));
+		assertEquals("Learn Spring MVC", recovered.todos.get(1).getDesc());
+	}
+
+	@Test
+	public void truncatesATornLastRecord() throws Exception {
+		TodoLog log = open(10000);
+		log.recover(new Recorder());
+		TodoLog.await(log.put(todo(1, "Learn Spring")));
+		TodoLog.await(log.put(todo(2, "Learn Struts")));
+		log.close();
+		Path segment = lastSegment();
+		long size = Files.size(segment);
+		// Length and crc of a record whose payload never made it
+		Files.write(segment, new byte[] { 0, 0, 0, 40, 1, 2 }, StandardOpenOption.APPEND);
+
+		Recorder recovered = new Recorder();
+		TodoLog reopened = open(10000);
+		reopened.recover(recovered);
+		assertEquals(2, recovered.todos.size());
+		assertEquals(2, reopened.getRecoveredRecords());
+		assertEquals(size, Files.size(segment));
+
+		TodoLog.await(reopened.put(todo(3, "Learn Hibernate")));
+		recovered = new Recorder();
+		open(10000).recover(recovered);
+		assertEquals(3, recovered.todos.size());
+	}
+
+	@Test
+	public void snapshotDeletesTheSegmentsItCovers() throws IOException {
+		TodoLog log = open(2);
+		log.recover(new Recorder());
+		TodoLog.await(log.put(todo(1, "Learn Spring")));
+		TodoLog.await(log.put(todo(2, "Learn Struts")));
+		assertTrue(log.isSnapshotDue());
+		int firstSegment = log.getSegment();
+
+		TodoLog.Checkpoint checkpoint = log.roll();
+		log.writeSnapshot(checkpoint, 2, Arrays.asList(todo(1, "Learn Spring"), todo(2, "Learn Struts")));
+		TodoLog.await(log.delete(1));
+		assertFalse(log.isSnapshotDue());
+		assertFalse(Files.exists(folder.getRoot().toPath().resolve(String.format("todos-%08d.log", firstSegment))));
+		assertEquals(1, log.getSnapshots());
+
+		Recorder recovered = new Recorder();
+		TodoLog reopened = open(2);
+		assertEquals(2, reopened.recover(recovered));
+		assertEquals(Arrays.asList(2), new ArrayList<Integer>(recovered.todos.keySet()));
+		assertEquals(1, reopened.getRecoveredRecords());
+	}
+
+	private TodoLog open(long snapshotEvery) {
+		TodoLog log = new TodoLog(folder.getRoot().getPath(), snapshotEvery);
+		logs.add(log);
+		return log;
+	}
+
+	private Path lastSegment() {
+		File[] segments = folder.getRoot().listFiles((dir, name) -> name.endsWith(".log"));
+		Arrays.sort(segments);
+		return segments[segments.length - 1].toPath();
+	}
+
+	private static Todo todo(int id, String desc) {
+		return new Todo(id, "in28Minutes", desc, new Date(), false);
+	}
+
+	private static class Recorder implements TodoLog.Replay {
+
+		final Map<Integer, Todo> todos = new LinkedHashMap<Integer, Todo>();
+
+		@Override
+		public void put(Todo todo) {
+			todos.put(todo.getId(), todo);
+		}
+
+		@Override
+		public void delete(int id) {
+			todos.remove(id);
+		}
+
+	}
+
+}
@@ -0,0 +1,174 @@
+package com.in28minutes.todo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class TodoRestControllerTests {
+
+	private static final Principal USER = () -> "in28Minutes";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private TodoLog log;
+	private TodoService service;
+	private MockMvc mvc;
+
+	@Before
+	public void start() {
+		log = new TodoLog(folder.getRoot().getPath(), 10000);
+		service = new TodoService(log);
+		TodoRestController controller = new TodoRestController();
+		controller.service = service;
+		controller.etags = new TodoEtags();
+		mvc = MockMvcBuilders.standaloneSetup(controller).build();
+	}
+
+	@After
+	public void close() throws InterruptedException {
+		service.close();
+		log.close();
+	}
+
+	@Test
+	public void streamsOneJsonObjectPerLine() throws Exception {
+		String body = mvc.perform(todos().param("stream", "true"))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(TodoRestController.NDJSON))
+				.andExpect(content().encoding("UTF-8"))
+				.andReturn().getResponse().getContentAsString();
+
+		assertEquals(ids(service.viewTodos("in28Minutes")), streamedIds(body));
+		assertEquals('\n', body.charAt(body.length() - 1));
+	}
+
+	@Test
+	public void streamsForAnNdjsonAcceptHeader() throws Exception {
+		String body = mvc.perform(todos().accept(TodoRestController.NDJSON))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+
+		assertEquals(ids(service.viewTodos("in28Minutes")), streamedIds(body));
+	}
+
+	@Test
+	public void pagesForAnyOtherAcceptHeader() throws Exception {
+		for (String accept : new String[] { "*/*", "application/json" }) {
+			String body = mvc.perform(todos().accept(accept))
+					.andExpect(status().isOk())
+					.andReturn().getResponse().getContentAsString();
+
+			TodoPage page = service.retrieveTodos("in28Minutes", null, null, 0);
+			Map<?, ?> json = mapper.readValue(body, Map.class);
+			assertEquals(ids(page.getTodos()), jsonIds((List<?>) json.get("todos")));
+		}
+	}
+
+	@Test
+	public void aMatchingEtagIsNotModified() throws Exception {
+		String etag = mvc.perform(todos())
+				.andExpect(status().isOk())
+				.andExpect(header().string("Cache-Control", "private, no-cache"))
+				.andReturn().getResponse().getHeader("ETag");
+
+		mvc.perform(todos().header("If-None-Match", etag))
+				.andExpect(status().isNotModified())
+				.andExpect(header().string("Cache-Control", "private, no-cache"))
+				.andExpect(content().string(""));
+
+		service.addTodo("in28Minutes", "Learn Spring", new Date(), false);
+		String changed = mvc.perform(todos().header("If-None-Match", etag))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader("ETag");
+		assertNotEquals(etag, changed);
+	}
+
+	@Test
+	public void aTodoEtagIsNotModifiedUntilTheTodoChanges() throws Exception {
+		Todo todo = service.addTodo("in28Minutes", "Learn Spring", new Date(), false);
+		String etag = mvc.perform(get("/todos/" + todo.getId()).principal(USER))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader("ETag");
+		mvc.perform(get("/todos/" + todo.getId()).principal(USER).header("If-None-Match", etag))
+				.andExpect(status().isNotModified())
+				.andExpect(header().string("Cache-Control", "private, no-cache"));
+
+		service.updateTodo(new Todo(todo.getId(), "in28Minutes", "Learn Spring MVC", new Date(), false));
+		mvc.perform(get("/todos/" + todo.getId()).principal(USER).header("If-None-Match", etag))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	public void anUnknownOrForeignTodoIsNotFound() throws Exception {
+		Todo other = service.addTodo("Ranga", "Learn Struts", new Date(), false);
+		mvc.perform(get("/todos/" + other.getId()).principal(USER))
+				.andExpect(status().isNotFound())
+				.andExpect(header().doesNotExist("ETag"));
+		mvc.perform(get("/todos/9999").principal(USER))
+				.andExpect(status().isNotFound())
+				.andExpect(header().doesNotExist("ETag"));
+
+		service.deleteTodo(other.getId());
+		mvc.perform(get("/todos/" + other.getId()).principal(() -> "Ranga"))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	public void aMalformedCursorIsABadRequest() throws Exception {
+		mvc.perform(todos().param("after", "1500000000000-7"))
+				.andExpect(status().isBadRequest());
+		mvc.perform(todos().param("before", "_7"))
+				.andExpect(status().isBadRequest());
+	}
+
+	private MockHttpServletRequestBuilder todos() {
+		return get("/todos").principal(USER);
+	}
+
+	private List<Integer> streamedIds(String body) throws Exception {
+		List<Object> todos = new ArrayList<Object>();
+		for (String line : body.split("\n")) {
+			todos.add(mapper.readValue(line, Map.class));
+		}
+		return jsonIds(todos);
+	}
+
+	private static List<Integer> jsonIds(List<?> todos) {
+		List<Integer> ids = new ArrayList<Integer>();
+		for (Object todo : todos) {
+			ids.add((Integer) ((Map<?, ?>) todo).get("id"));
+		}
+		return ids;
+	}
+
+	private static List<Integer> ids(Iterable<Todo> todos) {
+		List<Integer> ids = new ArrayList<Integer>();
+		for (Todo todo : todos) {
+			ids.add(todo.getId());
+		}
+		return ids;
+	}
+
+}
@@ -0,0 +1,167 @@
+package com.in28minutes.todo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TodoSearchIndexTests {
+
+	private final TodoSearchIndex index = new TodoSearchIndex();
+	private final Map<Integer, Todo> todos = new HashMap<Integer, Todo>();
+
+	@Test
+	public void exactMatchesRankAboveNewerPrefixMatches() {
+		add(1, "in28Minutes", "Learn Spring");
+		add(2, "in28Minutes", "Learn Springs and Summers");
+		add(3, "in28Minutes", "Learn Spring MVC");
+		add(4, "in28Minutes", "Learn Struts");
+
+		assertEquals(Arrays.asList(3, 1, 2), index.search("in28Minutes", "spring", 10));
+		assertEquals(Arrays.asList(3, 1), index.search("in28Minutes", "spring", 2));
+		// Equal scores go to the newer todo
+		assertEquals(Arrays.asList(4, 3, 2, 1), index.search("in28Minutes", "LEARN", 10));
+	}
+
+	@Test
+	public void everyTermHasToMatch() {
+		add(1, "in28Minutes", "Learn Spring");
+		add(2, "in28Minutes", "Learn Spring MVC");
+		add(3, "in28Minutes", "Teach MVC");
+
+		assertEquals(Arrays.asList(2), index.search("in28Minutes", "spring mvc", 10));
+		assertEquals(Arrays.asList(2), index.search("in28Minutes", "mv, sp", 10));
+		assertTrue(index.search("in28Minutes", "spring hibernate", 10).isEmpty());
+		assertTrue(index.search("in28Minutes", " !? ", 10).isEmpty());
+	}
+
+	@Test
+	public void searchesOnlyTheUsersTodos() {
+		add(1, "in28Minutes", "Learn Spring");
+		add(2, "Ranga", "Learn Spring");
+
+		assertEquals(Arrays.asList(1), index.search("in28Minutes", "spring", 10));
+		assertEquals(Arrays.asList(2), index.search("Ranga", "spring", 10));
+		assertTrue(index.search("Nobody", "spring", 10).isEmpty());
+	}
+
+	@Test
+	public void followsUpdatesAndDeletes() {
+		add(1, "in28Minutes", "Learn Spring");
+		add(2, "in28Minutes", "Learn Struts");
+
+		update(new Todo(1, "in28Minutes", "Learn Hibernate", new Date(), false));
+		assertTrue(index.search("in28Minutes", "spring", 10).isEmpty());
+		assertEquals(Arrays.asList(1), index.search("in28Minutes", "hib", 10));
+
+		update(new Todo(2, "Ranga", "Learn Struts", new Date(), false));
+		assertTrue(index.search("in28Minutes", "struts", 10).isEmpty());
+		assertEquals(Arrays.asList(2), index.search("Ranga", "struts", 10));
+
+		remove(1);
+		remove(2);
+		assertTrue(index.search("in28Minutes", "learn", 10).isEmpty());
+		assertTrue(index.search("Ranga", "learn", 10).isEmpty());
+	}
+
+	@Test
+	public void matchesABruteForceScan() {
+		String[] words = { "spring", "springs", "spr", "struts", "s", "java", "jav",
+				"maven", "mvc", "mv", "learn", "learning" };
+		String[] users = { "in28Minutes", "Ranga" };
+		Random random = new Random(28);
+		int nextId = 1;
+		for (int round = 0; round < 2000; round++) {
+			int action = random.nextInt(10);
+			List<Integer> ids = new ArrayList<Integer>(todos.keySet());
+			if (action < 5 || ids.isEmpty()) {
+				add(nextId++, users[random.nextInt(users.length)], randomText(random, words, 4));
+			} else if (action < 7) {
+				int id = ids.get(random.nextInt(ids.size()));
+				update(new Todo(id, users[random.nextInt(users.length)],
+						randomText(random, words, 4), new Date(), false));
+			} else if (action < 8) {
+				remove(ids.get(random.nextInt(ids.size())));
+			}
+			String user = users[random.nextInt(users.length)];
+			String query = randomText(random, words, 2);
+			int limit = 1 + random.nextInt(10);
+			assertEquals("Searching " + user + " for " + query + " limit " + limit,
+					bruteForce(user, query, limit), index.search(user, query, limit));
+		}
+	}
+
+	private void add(int id, String user, String desc) {
+		Todo todo = new Todo(id, user, desc, new Date(), false);
+		todos.put(id, todo);
+		index.add(todo);
+	}
+
+	// As the service does it: out with the old todo, in with the new
+	private void update(Todo todo) {
+		index.remove(todos.get(todo.getId()));
+		todos.put(todo.getId(), todo);
+		index.add(todo);
+	}
+
+	private void remove(int id) {
+		index.remove(todos.remove(id));
+	}
+
+	private static String randomText(Random random, String[] words, int maxWords) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 1 + random.nextInt(maxWords); i > 0; i--) {
+			String word = words[random.nextInt(words.length)];
+			text.append(random.nextBoolean() ? word : word.toUpperCase()).append(' ');
+		}
+		return text.toString();
+	}
+
+	// Scores every todo of the user, then sorts by score and newest first
+	private List<Integer> bruteForce(String user, String query, int limit) {
+		String[] terms = TodoSearchIndex.tokenize(query);
+		List<long[]> matches = new ArrayList<long[]>();
+		for (Todo todo : todos.values()) {
+			if (!todo.getUser().equals(user)) {
+				continue;
+			}
+			List<String> words = Arrays.asList(TodoSearchIndex.tokenize(todo.getDesc()));
+			int score = 0;
+			for (String term : terms) {
+				int match = 0;
+				for (String word : words) {
+					if (word.equals(term)) {
+						match = 2;
+					} else if (word.startsWith(term)) {
+						match = Math.max(match, 1);
+					}
+				}
+				if (match == 0) {
+					score = -1;
+					break;
+				}
+				score += match;
+			}
+			if (score > 0) {
+				matches.add(new long[] { score, todo.getId() });
+			}
+		}
+		Collections.sort(matches, (a, b) -> a[0] != b[0] ? Long.compare(b[0], a[0])
+				: Long.compare(b[1], a[1]));
+		List<Integer> ids = new ArrayList<Integer>();
+		for (long[] match : matches.subList(0, Math.min(limit, matches.size()))) {
+			ids.add((int) match[1]);
+		}
+		return ids;
+	}
+
+}
@@ -0,0 +1,419 @@
+package com.in28minutes.todo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TodoServiceTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final List<TodoLog> logs = new ArrayList<TodoLog>();
+	private final List<TodoService> services = new ArrayList<TodoService>();
+
+	@After
+	public void close() throws InterruptedException {
+		for (TodoService service : services) {
+			service.close();
+		}
+		for (TodoLog log : logs) {
+			log.close();
+		}
+	}
+
+	@Test
+	public void seedsOnlyAnEmptyDirectory() throws InterruptedException {
+		TodoService service = start();
+		List<Todo> seeded = new ArrayList<Todo>(service.viewTodos("in28Minutes"));
+		assertEquals(3, seeded.size());
+		for (Todo todo : seeded) {
+			assertTrue(service.deleteTodo(todo.getId()));
+		}
+		restart(service);
+
+		assertTrue(start().viewTodos("in28Minutes").isEmpty());
+	}
+
+	@Test
+	public void idsContinuePastTheRecoveredMaximum() throws InterruptedException {
+		TodoService service = start();
+		Todo last = service.addTodo("in28Minutes", "Learn JPA", new Date(), false);
+		// The highest id is gone, but must not be handed out again
+		assertTrue(service.deleteTodo(last.getId()));
+		stop(services.size() - 1);
+
+		TodoService recovered = start();
+		assertEquals(last.getId() + 1, recovered.addTodo("in28Minutes", "Learn JSF", new Date(), false).getId());
+	}
+
+	@Test
+	public void idsContinuePastASnapshot() throws InterruptedException {
+		TodoService service = start();
+		Todo last = service.addTodo("in28Minutes", "Learn JPA", new Date(), false);
+		assertTrue(service.deleteTodo(last.getId()));
+		// Closing snapshots the store, so the log alone no longer knows the id
+		restart(service);
+
+		TodoService recovered = start();
+		assertEquals(last.getId() + 1, recovered.addTodo("in28Minutes", "Learn JSF", new Date(), false).getId());
+	}
+
+	@Test
+	public void concurrentWritesKeepTheIndexesInAgreement() throws Exception {
+		TodoService service = start();
+		String[] users = { "in28Minutes", "Ranga", "Jane" };
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<Set<Integer>>> futures = new ArrayList<Future<Set<Integer>>>();
+		for (int thread = 0; thread < 4; thread++) {
+			final int seed = thread;
+			futures.add(executor.submit(new Callable<Set<Integer>>() {
+
+				// Adds todos, moves them between users and dates, deletes
+				// every third; returns the ids it added
+				@Override
+				public Set<Integer> call() {
+					Set<Integer> ids = new HashSet<Integer>();
+					for (int i = 0; i < 300; i++) {
+						Todo todo = service.addTodo(users[(seed + i) % users.length], "Todo " + i,
+								new Date(i * 1000L), false);
+						assertTrue(ids.add(todo.getId()));
+						assertTrue(service.updateTodo(new Todo(todo.getId(), users[(seed + i + 1) % users.length],
+								"Moved " + i, new Date(-i * 1000L), true)));
+						if (i % 3 == 0) {
+							assertTrue(service.deleteTodo(todo.getId()));
+						}
+					}
+					return ids;
+				}
+
+			}));
+		}
+		Set<Integer> added = new HashSet<Integer>();
+		for (Future<Set<Integer>> future : futures) {
+			Set<Integer> ids = future.get();
+			for (int id : ids) {
+				assertTrue("Id " + id + " handed out twice", added.add(id));
+			}
+		}
+		executor.shutdown();
+		assertEquals(1200, added.size());
+
+		Set<Integer> listed = new HashSet<Integer>();
+		for (String user : users) {
+			for (Todo todo : service.viewTodos(user)) {
+				assertTrue(listed.add(todo.getId()));
+				assertEquals(user, todo.getUser());
+				assertTrue(todo == service.retrieveTodo(todo.getId()));
+			}
+		}
+		int live = 0;
+		for (int id : added) {
+			if (service.retrieveTodo(id) != null) {
+				live++;
+				assertTrue(listed.contains(id));
+			}
+		}
+		// 4 threads keep two of every three, plus the seeded todos
+		assertEquals(800, live);
+		assertEquals(803, listed.size());
+	}
+
+	@Test
+	public void batchesReportEachItemAndTouchOnlyTheUsersTodos() {
+		TodoService service = start();
+		Todo own = service.addTodo("in28Minutes", "Learn Spring", new Date(), false);
+		Todo other = service.addTodo("Ranga", "Learn Struts", new Date(), false);
+
+		List<TodoBatchResult> updated = service.updateTodos("in28Minutes", Arrays.asList(
+				new Todo(own.getId(), "in28Minutes", "Learn Spring MVC", new Date(), true),
+				new Todo(other.getId(), "in28Minutes", "Taken over", new Date(), true),
+				new Todo(9999, "in28Minutes", "Learn Hibernate", new Date(), false)));
+		assertStatuses(updated, TodoBatchResult.Status.UPDATED, TodoBatchResult.Status.NOT_FOUND,
+				TodoBatchResult.Status.NOT_FOUND);
+		assertEquals(other.getId(), updated.get(1).getId());
+		assertEquals("Learn Spring MVC", service.retrieveTodo(own.getId()).getDesc());
+		assertEquals("Ranga", service.retrieveTodo(other.getId()).getUser());
+		assertEquals("Learn Struts", service.retrieveTodo(other.getId()).getDesc());
+
+		assertStatuses(service.deleteTodos("in28Minutes", Arrays.asList(other.getId(), own.getId(), own.getId())),
+				TodoBatchResult.Status.NOT_FOUND, TodoBatchResult.Status.DELETED,
+				TodoBatchResult.Status.NOT_FOUND);
+		assertNull(service.retrieveTodo(own.getId()));
+		assertEquals(other, service.retrieveTodo(other.getId()));
+	}
+
+	@Test
+	public void aBatchWithANullIdIsRejectedAsAWhole() {
+		TodoService service = start();
+		Todo own = service.addTodo("in28Minutes", "Learn Spring", new Date(), false);
+		try {
+			service.deleteTodos("in28Minutes", Arrays.asList(own.getId(), null));
+			fail("Accepted a null id");
+		} catch (IllegalArgumentException expected) {
+		}
+		assertEquals(own, service.retrieveTodo(own.getId()));
+	}
+
+	@Test
+	public void aBatchIsOneLogWrite() {
+		TodoService service = start();
+		TodoLog log = logs.get(0);
+		long appends = log.getAppends();
+		long fsyncs = log.getFsyncs();
+		List<Todo> todos = new ArrayList<Todo>();
+		for (int i = 0; i < 100; i++) {
+			todos.add(new Todo(0, null, "Todo " + i, new Date(), false));
+		}
+		List<TodoBatchResult> added = service.addTodos("in28Minutes", todos);
+		assertEquals(appends + 1, log.getAppends());
+		assertEquals(fsyncs + 1, log.getFsyncs());
+
+		List<Integer> ids = new ArrayList<Integer>();
+		for (TodoBatchResult result : added) {
+			assertEquals(TodoBatchResult.Status.CREATED, result.getStatus());
+			ids.add(result.getId());
+		}
+		service.deleteTodos("in28Minutes", ids);
+		assertEquals(appends + 2, log.getAppends());
+		assertEquals(fsyncs + 2, log.getFsyncs());
+
+		// Nothing to write, nothing written
+		service.deleteTodos("in28Minutes", ids);
+		assertEquals(appends + 2, log.getAppends());
+	}
+
+	private static void assertStatuses(List<TodoBatchResult> results, TodoBatchResult.Status... expected) {
+		List<TodoBatchResult.Status> statuses = new ArrayList<TodoBatchResult.Status>();
+		for (TodoBatchResult result : results) {
+			statuses.add(result.getStatus());
+		}
+		assertEquals(Arrays.asList(expected), statuses);
+	}
+
+	@Test
+	public void pagesWalkTheListInBothDirections() {
+		TodoService service = start();
+		Date today = new Date(1500000000000L);
+		Date tomorrow = new Date(today.getTime() + 86400000L);
+		Todo late = service.addTodo("Ranga", "Learn Hibernate", tomorrow, false);
+		Todo first = service.addTodo("Ranga", "Learn Spring", today, false);
+		Todo second = service.addTodo("Ranga", "Learn Struts", today, false);
+		Todo third = service.addTodo("Ranga", "Learn JSP", today, false);
+		Todo undated = service.addTodo("Ranga", "Learn Maven", null, false);
+
+		// Undated first, then by date, with equal dates in id order
+		TodoPage page = service.retrieveTodos("Ranga", null, null, 2);
+		assertEquals(Arrays.asList(undated, first), page.getTodos());
+		assertNull(page.getPrevious());
+		page = service.retrieveTodos("Ranga", page.getNext(), null, 2);
+		assertEquals(Arrays.asList(second, third), page.getTodos());
+		page = service.retrieveTodos("Ranga", page.getNext(), null, 2);
+		assertEquals(Arrays.asList(late), page.getTodos());
+		assertNull(page.getNext());
+
+		page = service.retrieveTodos("Ranga", null, page.getPrevious(), 2);
+		assertEquals(Arrays.asList(second, third), page.getTodos());
+		page = service.retrieveTodos("Ranga", null, page.getPrevious(), 2);
+		assertEquals(Arrays.asList(undated, first), page.getTodos());
+		assertNull(page.getPrevious());
+
+		// A page that ends exactly at the end of the list has no next page
+		page = service.retrieveTodos("Ranga", null, null, 5);
+		assertEquals(5, page.getTodos().size());
+		assertNull(page.getNext());
+		assertNull(page.getPrevious());
+		assertTrue(service.retrieveTodos("Nobody", null, null, 2).getTodos().isEmpty());
+	}
+
+	@Test
+	public void aTodoMovesWhenItsDateChanges() {
+		TodoService service = start();
+		Date today = new Date(1500000000000L);
+		Todo first = service.addTodo("Ranga", "Learn Spring", today, false);
+		Todo second = service.addTodo("Ranga", "Learn Struts", today, false);
+
+		Todo moved = new Todo(first.getId(), "Ranga", "Learn Spring", new Date(today.getTime() + 1), false);
+		service.updateTodo(moved);
+		assertEquals(Arrays.asList(second, moved), service.retrieveTodos("Ranga", null, null, 10).getTodos());
+		assertEquals(Arrays.asList(second, moved), new ArrayList<Todo>(service.viewTodos("Ranga")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void aMalformedCursorIsRejected() {
+		start().retrieveTodos("Ranga", "tomorrow", null, 2);
+	}
+
+	@Test
+	public void everyChangeMovesTheVersionsOfTheUsersItTouches() {
+		TodoService service = start();
+		long mine = service.retrieveUserVersion("in28Minutes");
+		assertEquals(0, service.retrieveUserVersion("Ranga"));
+
+		Todo todo = service.addTodo("in28Minutes", "Learn Spring", new Date(), false);
+		long todoVersion = service.retrieveTodoVersion(todo.getId());
+		assertTrue(todoVersion > 0);
+		assertTrue(service.retrieveUserVersion("in28Minutes") > mine);
+		mine = service.retrieveUserVersion("in28Minutes");
+
+		service.updateTodo(new Todo(todo.getId(), "in28Minutes", "Learn Spring MVC", new Date(), false));
+		assertTrue(service.retrieveTodoVersion(todo.getId()) > todoVersion);
+		assertTrue(service.retrieveUserVersion("in28Minutes") > mine);
+		mine = service.retrieveUserVersion("in28Minutes");
+
+		// Moving a todo to another user changes both lists
+		service.updateTodo(new Todo(todo.getId(), "Ranga", "Learn Spring MVC", new Date(), false));
+		assertTrue(service.retrieveUserVersion("in28Minutes") > mine);
+		assertTrue(service.retrieveUserVersion("Ranga") > 0);
+		mine = service.retrieveUserVersion("in28Minutes");
+		long theirs = service.retrieveUserVersion("Ranga");
+
+		assertTrue(service.deleteTodo(todo.getId()));
+		assertEquals(0, service.retrieveTodoVersion(todo.getId()));
+		assertTrue(service.retrieveUserVersion("Ranga") > theirs);
+		assertEquals(mine, service.retrieveUserVersion("in28Minutes"));
+	}
+
+	@Test
+	public void storesDescriptionsPastTheModifiedUtf8Limit() throws InterruptedException {
+		TodoService service = start();
+		String desc = repeat('\u00e9', 70000);
+		int id = service.addTodo("in28Minutes", desc, new Date(), false).getId();
+		stop(0);
+
+		assertEquals(desc, start().retrieveTodo(id).getDesc());
+	}
+
+	@Test
+	public void aTodoTheLogRefusesIsNotStored() throws InterruptedException {
+		TodoService service = start();
+		String tooLarge = repeat('x', TodoLog.MAX_RECORD + 1);
+		try {
+			service.addTodo("Ranga", tooLarge, new Date(), false);
+			fail("Stored a todo larger than a log record");
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			service.addTodos("Ranga", Arrays.asList(new Todo(0, null, "Learn Spring", new Date(), false),
+					new Todo(0, null, tooLarge, new Date(), false)));
+			fail("Stored a todo larger than a log record");
+		} catch (IllegalArgumentException expected) {
+		}
+		Todo seeded = service.viewTodos("in28Minutes").iterator().next();
+		try {
+			service.updateTodos("in28Minutes", Arrays.asList(new Todo(seeded.getId(), null, tooLarge, new Date(), false)));
+			fail("Stored a todo larger than a log record");
+		} catch (IllegalArgumentException expected) {
+		}
+		assertTrue(service.viewTodos("Ranga").isEmpty());
+		assertEquals(seeded, service.retrieveTodo(seeded.getId()));
+		assertEquals(seeded.getDesc(), service.retrieveTodo(seeded.getId()).getDesc());
+
+		logs.get(0).close();
+		try {
+			service.addTodo("Ranga", "Learn Spring", new Date(), false);
+			fail("Stored a todo while the log is closed");
+		} catch (IllegalStateException expected) {
+		}
+		assertTrue(service.viewTodos("Ranga").isEmpty());
+	}
+
+	@Test
+	public void aFailedLogWriteIsTakenBackOutOfMemory() {
+		FailingTodoLog log = new FailingTodoLog(folder.getRoot().getPath());
+		logs.add(log);
+		TodoService service = new TodoService(log);
+		services.add(service);
+		Todo seeded = service.viewTodos("in28Minutes").iterator().next();
+		long version = service.retrieveUserVersion("in28Minutes");
+
+		log.failing = true;
+		try {
+			service.addTodo("Ranga", "Learn Spring", new Date(), false);
+			fail("Write did not fail");
+		} catch (UncheckedIOException expected) {
+		}
+		try {
+			service.updateTodo(new Todo(seeded.getId(), "Ranga", "Learn Struts 2", new Date(), true));
+			fail("Write did not fail");
+		} catch (UncheckedIOException expected) {
+		}
+		assertTrue(service.viewTodos("Ranga").isEmpty());
+		assertTrue(service.searchTodos("Ranga", "learn", 10).isEmpty());
+		assertTrue(seeded == service.retrieveTodo(seeded.getId()));
+		assertEquals(3, service.viewTodos("in28Minutes").size());
+		// Taking a change back is a change too, as far as caches go
+		assertTrue(service.retrieveUserVersion("in28Minutes") > version);
+	}
+
+	// Reports every single todo write as failed to reach the disk
+	private static class FailingTodoLog extends TodoLog {
+
+		volatile boolean failing;
+
+		FailingTodoLog(String directory) {
+			super(directory, 10000);
+		}
+
+		@Override
+		public CompletableFuture<Void> put(Todo todo) {
+			CompletableFuture<Void> durable = super.put(todo);
+			if (!failing) {
+				return durable;
+			}
+			durable.join();
+			CompletableFuture<Void> failed = new CompletableFuture<Void>();
+			failed.completeExceptionally(new IOException("No space left on device"));
+			return failed;
+		}
+
+	}
+
+	private static String repeat(char c, int count) {
+		char[] chars = new char[count];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+
+	private TodoService start() {
+		TodoLog log = new TodoLog(folder.getRoot().getPath(), 10000);
+		logs.add(log);
+		TodoService service = new TodoService(log);
+		services.add(service);
+		return service;
+	}
+
+	// Shuts down cleanly, with the final snapshot
+	private void restart(TodoService service) throws InterruptedException {
+		int index = services.indexOf(service);
+		service.close();
+		stop(index);
+	}
+
+	// Stops the log without a snapshot, as a crash would
+	private void stop(int index) throws InterruptedException {
+		services.remove(index);
+		logs.remove(index).close();
+	}
+
+}